@@ -0,0 +1,124 @@
+package template;
+
+import logist.config.ParserException;
+import logist.config.Parsers;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Benchmark of the DistanceTable against the Topology calls it replaces in the planners:
+//- distance: the cost of a move as getSuccessor computes it, for every pair of cities
+//- path: the cities of the moves computePlan appends, for every pair of cities
+//- build: building the table once in setup
+//Each is repeated for at least 200 ms, 5 times after a warm-up run, and the best time per pair is reported.
+//
+//Build and run from Workspace/deliberative:
+//  javac -sourcepath "" -cp "../logist/logist.jar:../logist/lib/*" -d bench-bin src/template/*.java bench/template/*.java
+//  java -cp "bench-bin:../logist/logist.jar:../logist/lib/*" template.DistanceBenchmark config/topology/*.xml
+public class DistanceBenchmark {
+
+	private static final long MIN_RUN_NANOS = 200000000L;
+	private static final int RUNS = 5;
+	private static final int COST_PER_KM = 5;
+
+	//keeps the results alive so the loops are not optimized away
+	static double sink;
+
+	public static void main(String[] args) throws ParserException {
+		if (args.length == 0) {
+			System.err.println("Usage: DistanceBenchmark topology.xml...");
+			System.exit(-1);
+		}
+		System.out.printf("%-16s %6s %-8s %14s %14s %8s%n", "topology", "cities", "op", "City ns/pair", "table ns/pair",
+				"speedup");
+		for (String file : args) {
+			Topology topology = Parsers.parseTopology(file);
+			final City[] citiesIndex = new City[topology.size()];
+			for (City c : topology) {
+				citiesIndex[c.id] = c;
+			}
+			final DistanceTable table = new DistanceTable(citiesIndex);
+			final int n = citiesIndex.length;
+			String name = file.substring(file.lastIndexOf('/') + 1).replace(".xml", "");
+
+			report(name, n, "distance", measure(n * n, new Runnable() {
+				@Override
+				public void run() {
+					double sum = 0;
+					for (City x : citiesIndex) {
+						for (City y : citiesIndex) {
+							sum += COST_PER_KM * x.distanceTo(y);
+						}
+					}
+					sink += sum;
+				}
+			}), measure(n * n, new Runnable() {
+				@Override
+				public void run() {
+					double sum = 0;
+					for (int x = 0; x < n; x++) {
+						for (int y = 0; y < n; y++) {
+							sum += COST_PER_KM * table.distance(x, y);
+						}
+					}
+					sink += sum;
+				}
+			}));
+			report(name, n, "path", measure(n * n, new Runnable() {
+				@Override
+				public void run() {
+					int moves = 0;
+					for (City x : citiesIndex) {
+						for (City y : citiesIndex) {
+							for (City c : x.pathTo(y)) {
+								moves += c.id;
+							}
+						}
+					}
+					sink += moves;
+				}
+			}), measure(n * n, new Runnable() {
+				@Override
+				public void run() {
+					int moves = 0;
+					for (int x = 0; x < n; x++) {
+						for (int y = 0; y < n; y++) {
+							for (City c : table.path(x, y)) {
+								moves += c.id;
+							}
+						}
+					}
+					sink += moves;
+				}
+			}));
+			double build = measure(n * n, new Runnable() {
+				@Override
+				public void run() {
+					sink += new DistanceTable(citiesIndex).numCities;
+				}
+			});
+			System.out.printf("%-16s %6d %-8s %14s %14.1f%n", name, n, "build", "", build);
+		}
+	}
+
+	//Best nanoseconds per pair over the runs, an operation covering pairs pairs
+	private static double measure(int pairs, Runnable operation) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int run = 0; run <= RUNS; run++) {
+			long start = System.nanoTime();
+			long operations = 0;
+			do {
+				operation.run();
+				operations++;
+			} while (System.nanoTime() - start < MIN_RUN_NANOS);
+			//the first run only warms up
+			if (run == 0) continue;
+			best = Math.min(best, (System.nanoTime() - start) / (double) (operations * pairs));
+		}
+		return best;
+	}
+
+	private static void report(String topology, int cities, String operation, double viaCity, double viaTable) {
+		System.out.printf("%-16s %6d %-8s %14.1f %14.1f %7.1fx%n", topology, cities, operation, viaCity, viaTable,
+				viaCity / viaTable);
+	}
+}
@@ -8,19 +8,24 @@ import logist.topology.Topology;
 import java.util.*;
 
 public class ASTAR extends BFS {
-    enum heuristic { FIRST, HIGHEST };
+    // Lower bounds on the cost left to deliver every task, all admissible:
+    // FIRST: pickup -> delivery of the first waiting task
+    // HIGHEST: largest current -> pickup -> delivery of a waiting task, or current -> delivery of a carried one
+    // CARRIED: largest current -> delivery of a carried task
+    // MST: spanning tree of the current city and the cities still to visit, or HIGHEST if it is larger
+    enum heuristic { FIRST, HIGHEST, CARRIED, MST };
     heuristic heuristicMode;
 
     // Use default heuristic
     public ASTAR(Vehicle vehicle, Topology.City[] citiesIndex, TaskSet tasks) {
-        super(vehicle, citiesIndex, tasks);
-        this.heuristicMode = heuristic.FIRST;
+        this(vehicle, citiesIndex, heuristic.FIRST, tasks);
     }
 
     // Set specific heuristic
     public ASTAR(Vehicle vehicle, Topology.City[] citiesIndex, heuristic heuristicMode, TaskSet tasks) {
-        super(vehicle, citiesIndex, tasks);
+        super(vehicle, citiesIndex, tasks, false);
         this.heuristicMode = heuristicMode;
+        search();
     }
 
     @Override
@@ -30,20 +35,105 @@ public class ASTAR extends BFS {
 
     public void createASTAR() {
         PriorityQueue<Node> Q = new PriorityQueue<Node>();
-        Map<Node, Double> C = new HashMap<>();
         Q.add(this.root);
 
         while (!Q.isEmpty()) {
             Node n = Q.remove();
+            // A cheaper way to this state was found since it was queued
+            if (n.cost > costs.get(n.state))
+                continue;
             if (n.state.isFinalState()) {
                 goalNodes.add(n);
                 break;
             }
-            if (!C.containsKey(n)) {
-                C.put(n, n.cost);
-                PriorityQueue<Node> successorNodes = (PriorityQueue<Node>) getSuccessor(n, new PriorityQueue<Node>());
-                Q.addAll(successorNodes);
+            expansions++;
+            getSuccessor(n, Q);
+        }
+    }
+
+    @Override
+    void estimate(Node node) {
+        node.f = node.cost + costPerKm * distanceLeft(node.state);
+    }
+
+    // Lower bound on the km left from state
+    double distanceLeft(State state) {
+        switch (heuristicMode) {
+        case FIRST:
+            return first(state);
+        case HIGHEST:
+            return highest(state);
+        case CARRIED:
+            return carried(state);
+        case MST:
+            return Math.max(spanningTree(state), highest(state));
+        default:
+            throw new AssertionError("Should not happen.");
+        }
+    }
+
+    private double first(State state) {
+        for (int i = 0; i < numTasks; i++) {
+            if (state.status(i) == State.WAITING)
+                return distances.distance(pickup[i], delivery[i]);
+        }
+        return 0;
+    }
+
+    private double carried(State state) {
+        int current = state.city();
+        double h = 0;
+        for (int i = 0; i < numTasks; i++) {
+            if (state.status(i) == State.CARRIED)
+                h = Math.max(h, distances.distance(current, delivery[i]));
+        }
+        return h;
+    }
+
+    // Weight of the minimum spanning tree (Prim) of the current city and the pickup and delivery cities
+    // left, any route through them is at least as long
+    private double spanningTree(State state) {
+        boolean[] visit = new boolean[numCities];
+        visit[state.city()] = true;
+        int k = 1;
+        for (int i = 0; i < numTasks; i++) {
+            int status = state.status(i);
+            if (status == State.WAITING && !visit[pickup[i]]) {
+                visit[pickup[i]] = true;
+                k++;
+            }
+            if (status != State.DELIVERED && !visit[delivery[i]]) {
+                visit[delivery[i]] = true;
+                k++;
+            }
+        }
+        int[] cities = new int[k];
+        cities[0] = state.city();
+        for (int c = 0, j = 1; c < numCities; c++) {
+            if (visit[c] && c != state.city())
+                cities[j++] = c;
+        }
+
+        // distance to the tree of the cities out of it
+        double[] link = new double[k];
+        Arrays.fill(link, Double.POSITIVE_INFINITY);
+        boolean[] inTree = new boolean[k];
+        inTree[0] = true;
+        int last = 0;
+        double weight = 0;
+        for (int added = 1; added < k; added++) {
+            int next = -1;
+            for (int j = 0; j < k; j++) {
+                if (inTree[j])
+                    continue;
+                link[j] = Math.min(link[j], distances.distance(cities[last], cities[j]));
+                if (next < 0 || link[j] < link[next])
+                    next = j;
             }
+            inTree[next] = true;
+            weight += link[next];
+            last = next;
         }
+        return weight;
     }
 }
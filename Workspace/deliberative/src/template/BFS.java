@@ -15,18 +15,30 @@ public class BFS {
 	public Stack<Node> Q;
  	final City[] citiesIndex;
  	Task[] taskList;
-	public HashMap<Node, Double> bfs;
 	public Node root;
 	public Vehicle vehicle;
 	public ArrayList<Node> goalNodes;
 	public ArrayList<Node> path;
-	public HashMap<State, Double> compare;
+	//lowest cost of every reached state
+	public StateTable costs;
 	final int numCities;
 	final int numTasks;
 	final int costPerKm;
+	final DistanceTable distances;
+	//cities where each task is picked up and delivered
+	final int[] pickup;
+	final int[] delivery;
 	final long startTime;
+	//nodes expanded in the last search, and nodes cut by the bound in the last branch and bound
+	int expansions;
+	int pruned;
 
 	public BFS(Vehicle vehicle, City[] citiesIndex, TaskSet tasks) {
+		this(vehicle, citiesIndex, tasks, true);
+	}
+
+	//Planner for tasks, which only searches right away if searchNow
+	BFS(Vehicle vehicle, City[] citiesIndex, TaskSet tasks, boolean searchNow) {
 		startTime = System.nanoTime();
 		System.out.println("Timer started");
 		this.citiesIndex = citiesIndex;
@@ -34,12 +46,23 @@ public class BFS {
 		this.vehicle = vehicle;
 		this.goalNodes = new ArrayList<Node>();
 		this.Q = new Stack<>();
-		this.compare = new HashMap<State, Double>();
+		this.costs = new StateTable(setupParams.loadFactor);
 		this.numCities = citiesIndex.length;
 		this.numTasks = setupParams.taskList.length;
+		this.distances = setupParams.distances;
+		this.pickup = new int[numTasks];
+		this.delivery = new int[numTasks];
+		for (int i = 0; i < numTasks; i++) {
+			// tasks not in the first task set are never planned
+			if (taskList[i] != null) {
+				pickup[i] = taskList[i].pickupCity.id;
+				delivery[i] = taskList[i].deliveryCity.id;
+			}
+		}
 		this.root = getInitialNode(tasks);
 		this.costPerKm = vehicle.costPerKm();
-		executeAlgorithm();
+		if (searchNow)
+			search();
 	}
 
 	Collection<Node> getSuccessor(Node current, Collection<Node> fs) {
@@ -48,27 +71,24 @@ public class BFS {
 
 		//simulate actions and create new nodes
 		for (int i = 0; i < numTasks; i++) {
-			if (current.state.stateList[i] == 0 && this.taskList[i].weight < current.state.capacityLeft) {
+			int status = current.state.status(i);
+			if (status == State.WAITING && this.taskList[i].weight <= current.state.capacityLeft) {
 				//pick up task i
-				int[] a = current.state.stateList.clone();
-				a[i] = 1;
-				a[numTasks] = taskList[i].pickupCity.id;
-				actionCost = this.costPerKm * citiesIndex[current.state.stateList[numTasks]].distanceTo(this.taskList[i].pickupCity);
-				State newState = new State(a, current.state.capacityLeft - this.taskList[i].weight);
+				actionCost = this.costPerKm * distances.distance(current.state.city(), pickup[i]);
+				State newState = current.state.next(i, State.CARRIED, pickup[i],
+						current.state.capacityLeft - this.taskList[i].weight);
 				Node newNode = new Node(newState, current.cost + actionCost, current);
-				if (this.compare.get(newState) == null || this.compare.get(newState) > newNode.cost) {
-					this.compare.put(newState, newNode.cost);
+				if (this.costs.improve(newState, newNode.cost)) {
+					estimate(newNode);
 					fs.add(newNode);
 				}
-			} else if (current.state.stateList[i] == 1) {
-				int[] b = current.state.stateList.clone();
-				b[i] = 2;
-				b[numTasks] = taskList[i].deliveryCity.id;
-				actionCost = this.costPerKm * citiesIndex[current.state.stateList[numTasks]].distanceTo(this.taskList[i].deliveryCity);
-				State newState = new State(b, current.state.capacityLeft + this.taskList[i].weight);
+			} else if (status == State.CARRIED) {
+				actionCost = this.costPerKm * distances.distance(current.state.city(), delivery[i]);
+				State newState = current.state.next(i, State.DELIVERED, delivery[i],
+						current.state.capacityLeft + this.taskList[i].weight);
 				Node newNode = new Node(newState, current.cost + actionCost, current);
-				if (this.compare.get(newState) == null || this.compare.get(newState) > newNode.cost) {
-					this.compare.put(newState, newNode.cost);
+				if (this.costs.improve(newState, newNode.cost)) {
+					estimate(newNode);
 					fs.add(newNode);
 				}
 			}
@@ -76,56 +96,128 @@ public class BFS {
 		return fs;
 	}
 
+	//Branch and bound: goalNodes only holds the cheapest plan found so far, starting with the naive one,
+	//and the nodes whose cost plus lower bound reach its cost are cut
 	private void createBfs() {
-		this.bfs = new HashMap<Node, Double>();
+		Node naive = naiveNode();
+		double bound = Double.POSITIVE_INFINITY;
+		if (naive != null) {
+			this.goalNodes.add(naive);
+			bound = naive.cost;
+		}
+		System.out.println("Naive plan bound " + bound);
+		this.pruned = 0;
 		Q.push(this.root);
 		while (!(Q.isEmpty())) {
 			Node current = Q.pop();
+			//A cheaper way to this state was found since it was pushed
+			if (current.cost > this.costs.get(current.state))
+				continue;
+			//The bound went down since it was pushed
+			if (current.f >= bound) {
+				this.pruned++;
+				continue;
+			}
 			if (current.state.isFinalState()) {
+				this.goalNodes.clear();
 				this.goalNodes.add(current);
+				bound = current.cost;
 				continue;
 			}
-			//Add new level
-			if (!this.bfs.containsKey(current)) {
-				ArrayList<Node> newLevel = (ArrayList<Node>) getSuccessor(current, new ArrayList<>());
-				this.bfs.put(current, current.cost);
-				for (Node n : newLevel) {
+			//Add new level, the most promising node on top
+			this.expansions++;
+			ArrayList<Node> newLevel = (ArrayList<Node>) getSuccessor(current, new ArrayList<>());
+			Collections.sort(newLevel, Collections.reverseOrder());
+			for (Node n : newLevel) {
+				if (n.f < bound)
 					Q.push(n);
+				else
+					this.pruned++;
+			}
+		}
+		System.out.println("Pruned " + this.pruned + " nodes");
+	}
+
+	//Goal of the naive plan from the root: deliver the carried tasks, then pick up and deliver the others
+	//one after the other, null if a task is too heavy for the vehicle
+	Node naiveNode() {
+		Node node = this.root;
+		for (int status : new int[] { State.CARRIED, State.WAITING }) {
+			for (int i = 0; i < numTasks; i++) {
+				if (this.root.state.status(i) != status)
+					continue;
+				State s = node.state;
+				if (status == State.WAITING) {
+					if (this.taskList[i].weight > s.capacityLeft)
+						return null;
+					node = new Node(s.next(i, State.CARRIED, pickup[i], s.capacityLeft - this.taskList[i].weight),
+							node.cost + this.costPerKm * distances.distance(s.city(), pickup[i]), node);
+					s = node.state;
 				}
+				node = new Node(s.next(i, State.DELIVERED, delivery[i], s.capacityLeft + this.taskList[i].weight),
+						node.cost + this.costPerKm * distances.distance(s.city(), delivery[i]), node);
 			}
 		}
+		return node;
 	}
 
 	void executeAlgorithm() {
 		createBfs();
 	}
 
-	Node getInitialNode(TaskSet newTasks) {
-		State newState = new State(new int[numTasks+1], this.vehicle.capacity());
+	//Sets the lower bound on the cost of the plans through a new node
+	void estimate(Node node) {
+		node.f = node.cost + this.costPerKm * highest(node.state);
+	}
 
-		// Initialize everything to N/A
-		for (int i = 0; i < newState.stateList.length; i++) {
-			newState.stateList[i] = 2;
+	//Lower bound on the km left from state: the longest current -> pickup -> delivery of a waiting task
+	//or current -> delivery of a carried one
+	double highest(State state) {
+		int current = state.city();
+		double h = 0;
+		for (int i = 0; i < numTasks; i++) {
+			int status = state.status(i);
+			if (status == State.WAITING)
+				h = Math.max(h, distances.distance(current, pickup[i]) + distances.distance(pickup[i], delivery[i]));
+			else if (status == State.CARRIED)
+				h = Math.max(h, distances.distance(current, delivery[i]));
 		}
-		// Set current city
-		newState.stateList[numTasks] = this.vehicle.getCurrentCity().id;
+		return h;
+	}
+
+	//Starts a search from the root, with an empty table
+	void search() {
+		this.costs.clear();
+		this.costs.improve(this.root.state, this.root.cost);
+		this.expansions = 0;
+		estimate(this.root);
+		executeAlgorithm();
+		System.out.println("Expanded " + this.expansions + " nodes");
+		System.out.println(this.costs.stats());
+	}
+
+	Node getInitialNode(TaskSet newTasks) {
+		// Everything N/A in the current city
+		int city = this.vehicle.getCurrentCity().id;
+		State newState = State.initial(city, this.vehicle.capacity());
+
 		// Set states for available tasks
 		for (Task t : newTasks) {
-			newState.stateList[t.id] = 0;
+			newState = newState.next(t.id, State.WAITING, city, newState.capacityLeft);
 		}
 		return new Node(newState, 0, null);
 	}
 
 	public void updatePlan(TaskSet newTasks) {
 		this.goalNodes.clear();
-		this.root = getInitialNode(newTasks);
+		State newState = getInitialNode(newTasks).state;
 
 		// Set all currently carried tasks back to state "carrying"
 		for (Task t : vehicle.getCurrentTasks()) {
-			this.root.state.stateList[t.id] = 1;
-			this.root.state.capacityLeft -= t.id;
+			newState = newState.next(t.id, State.CARRIED, newState.city(), newState.capacityLeft - t.weight);
 		}
-		executeAlgorithm();
+		this.root = new Node(newState, 0, null);
+		search();
 	}
 
 
@@ -148,26 +240,28 @@ public class BFS {
 			System.out.println(n.cost);
 			System.out.println(n.state.capacityLeft);
 			for (int u = 0; u < this.numTasks; u++) {
-				System.out.print(" " + n.state.stateList[u]);
+				System.out.print(" " + n.state.status(u));
 			}
 			System.out.println();
 		}
 		Collections.reverse(path);
 		for (int i = 1; i < path.size(); i++) {
-			City oldCity = this.citiesIndex[path.get(i - 1).state.stateList[numTasks]];
-			City newCity = this.citiesIndex[path.get(i).state.stateList[numTasks]];
+			State oldState = path.get(i - 1).state;
+			State newState = path.get(i).state;
+			City oldCity = this.citiesIndex[oldState.city()];
+			City newCity = this.citiesIndex[newState.city()];
 
 			if (!oldCity.equals(newCity)) {
-				for (City city : oldCity.pathTo(newCity)) {
+				for (City city : distances.path(oldCity.id, newCity.id)) {
 					plan.appendMove(city);
 				}
 			}
 			//pick and deliver
 			for (int j = 0; j < this.numTasks; j++) {
-				if (path.get(i).state.stateList[j] == 1 && path.get(i - 1).state.stateList[j] == 0) {
+				if (newState.status(j) == State.CARRIED && oldState.status(j) == State.WAITING) {
 					plan.appendPickup(this.taskList[j]);
 				}
-				else if (path.get(i).state.stateList[j] == 2 && path.get(i - 1).state.stateList[j] == 1) {
+				else if (newState.status(j) == State.DELIVERED && oldState.status(j) == State.CARRIED) {
 					plan.appendDelivery(this.taskList[j]);
 				}
 			}
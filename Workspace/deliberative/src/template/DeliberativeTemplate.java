@@ -36,6 +36,7 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 	/* the planning class */
 	Algorithm algorithm;
+	ASTAR.heuristic heuristic;
 	ASTAR astar;
 	BFS bfs;
 	
@@ -50,12 +51,21 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 			citiesIndex[k] = c;
 			k++;
 		}
+		// distances and paths between all the cities, for the planners
+		setupParams.distances = new DistanceTable(citiesIndex);
 
 		// initialize the planner
 		String algorithmName = agent.readProperty("algorithm", String.class, "ASTAR");
 		
 		// Throws IllegalArgumentException if algorithm is unknown
 		algorithm = Algorithm.valueOf(algorithmName.toUpperCase());
+
+		// Lower bound used by ASTAR, throws IllegalArgumentException if unknown
+		String heuristicName = agent.readProperty("heuristic", String.class, "MST");
+		heuristic = ASTAR.heuristic.valueOf(heuristicName.toUpperCase());
+
+		// Maximal share of used slots in the table of reached states
+		setupParams.loadFactor = agent.readProperty("load-factor", Double.class, 0.5);
 	}
 	
 	@Override
@@ -73,13 +83,14 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 				taskList[t.id] = t;
 			}
 			setupParams.taskList = taskList;
+			setupParams.setLayout(citiesIndex.length, taskList.length);
 		}
 		System.out.printf("Computing the plan with algorithm %s\n", agent.readProperty("algorithm", String.class, "NAIVE").toString());
 		// Compute the plan with the selected algorithm.
 		switch (algorithm) {
 		case ASTAR:
 			if (firstRun)
-				this.astar = new ASTAR(vehicle, this.citiesIndex, tasks);
+				this.astar = new ASTAR(vehicle, this.citiesIndex, heuristic, tasks);
 			else
 				this.astar.updatePlan(tasks);
 			plan = astar.computePlan();
@@ -134,30 +145,64 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	}
 }
 
-class State{
-	//0 = not picked up not delivered
-	//1 = picked up not delivered
-	//2 = delivered
-	public int[] stateList;
-	public double capacityLeft;
+class State {
+	//status of a task, 2 bits each
+	static final int WAITING = 0;
+	static final int CARRIED = 1;
+	//delivered, or not to deliver in this plan
+	static final int DELIVERED = 2;
 
-	public State(int[] s, double capacityLeft) {
-		stateList = s.clone();
+	//current city and task statuses, packed as described in setupParams
+	public final long bits;
+	//the words after the first one, null if the state fits in one long
+	public final long[] more;
+	public final double capacityLeft;
+
+	private State(long bits, long[] more, double capacityLeft) {
+		this.bits = bits;
+		this.more = more;
 		this.capacityLeft = capacityLeft;
 	}
 
-	public boolean isFinalState() {
-		for (int i = 0; i < (stateList.length-1); i++) {
-			if (stateList[i] != 2) {
-				return false;
-			}
+	//State in city where every task is delivered
+	static State initial(int city, double capacityLeft) {
+		long[] more = (setupParams.finalMore == null) ? null : setupParams.finalMore.clone();
+		return new State(setupParams.finalBits | city, more, capacityLeft);
+	}
+
+	public int city() {
+		return (int) (bits & setupParams.cityMask);
+	}
+
+	public int status(int task) {
+		int w = setupParams.word(task);
+		long word = (w == 0) ? bits : more[w - 1];
+		return (int) (word >>> setupParams.shift(task)) & 3;
+	}
+
+	//Same state with task set to status, the vehicle in city and capacityLeft
+	public State next(int task, int status, int city, double capacityLeft) {
+		int w = setupParams.word(task);
+		int shift = setupParams.shift(task);
+		long b = (bits & ~setupParams.cityMask) | city;
+		long[] m = more;
+		if (w == 0) {
+			b = (b & ~(3L << shift)) | ((long) status << shift);
+		} else {
+			m = more.clone();
+			m[w - 1] = (m[w - 1] & ~(3L << shift)) | ((long) status << shift);
 		}
-		return true;
+		return new State(b, m, capacityLeft);
+	}
+
+	public boolean isFinalState() {
+		return (bits & ~setupParams.cityMask) == setupParams.finalBits
+				&& (more == null || Arrays.equals(more, setupParams.finalMore));
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(this.stateList);
+		return (more == null) ? Long.hashCode(bits) : 31 * Long.hashCode(bits) + Arrays.hashCode(more);
 	}
 
 	@Override
@@ -165,11 +210,8 @@ class State{
 		if (obj == null)
 			return false;
 		State o = (State) obj;
-		if (!Arrays.equals(this.stateList, o.stateList))
-			return false;
-		if (!(this.capacityLeft == o.capacityLeft))
-			return false;
-		return true;
+		//the capacity left follows from the carried tasks
+		return bits == o.bits && (more == null || Arrays.equals(more, o.more));
 	}
 }
 
@@ -177,16 +219,19 @@ class Node implements Comparable<Node> {
 	public Node parent;
 	public State state;
 	public double cost;
+	//estimated cost of the best plan through this node, set once by the planner
+	public double f;
 
 	public Node (State state, double cost, Node parent) {
 		this.cost = cost;
+		this.f = cost;
 		this.state = state;
 		this.parent = parent;
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(this.state.stateList);
+		return state.hashCode();
 	}
 
 	@Override
@@ -194,7 +239,7 @@ class Node implements Comparable<Node> {
 		if (obj == null)
 			return false;
 		Node o = (Node) obj;
-		if (!Arrays.equals(this.state.stateList, o.state.stateList))
+		if (!this.state.equals(o.state))
 			return false;
 		if (this.cost != o.cost)
 			return false;
@@ -203,23 +248,45 @@ class Node implements Comparable<Node> {
 
 	@Override
 	public int compareTo(Node o) {
-		return (int)(this.getHeuristicCosts() - o.getHeuristicCosts());
-	}
-
-	double getHeuristicCosts() {
-		double h = 0;
-		for (int y = 0; y < (state.stateList.length-1); y++) {
-			if (state.stateList[y] == 0) {
-				h = setupParams.taskList[y].pickupCity.distanceTo(setupParams.taskList[y].deliveryCity);
-				break;
-			}
-		}
-		return cost + h;
+		return Double.compare(this.f, o.f);
 	}
 }
 
 class setupParams {
 	static Task[] taskList;
+	static DistanceTable distances;
+	static double loadFactor = 0.5;
+
+	//Layout of the packed states: the city in the low cityBits bits of the first long, then 2 bits per task,
+	//firstWordTasks tasks in the first long and 32 in each of the extraWords longs after it
+	static int cityBits;
+	static long cityMask;
+	static int firstWordTasks;
+	static int extraWords;
+	//the task bits of a state where every task is delivered
+	static long finalBits;
+	static long[] finalMore;
+
+	static void setLayout(int numCities, int numTasks) {
+		cityBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(numCities - 1));
+		cityMask = (1L << cityBits) - 1;
+		firstWordTasks = (64 - cityBits) / 2;
+		extraWords = (numTasks <= firstWordTasks) ? 0 : (numTasks - firstWordTasks + 31) / 32;
+		finalBits = 0;
+		finalMore = (extraWords == 0) ? null : new long[extraWords];
+		for (int t = 0; t < numTasks; t++) {
+			if (word(t) == 0) finalBits |= (long) State.DELIVERED << shift(t);
+			else finalMore[word(t) - 1] |= (long) State.DELIVERED << shift(t);
+		}
+	}
+
+	static int word(int task) {
+		return (task < firstWordTasks) ? 0 : 1 + (task - firstWordTasks) / 32;
+	}
+
+	static int shift(int task) {
+		return (task < firstWordTasks) ? cityBits + 2 * task : 2 * ((task - firstWordTasks) % 32);
+	}
 }
 
 
@@ -0,0 +1,38 @@
+package template;
+
+import java.util.List;
+
+import logist.topology.Topology.City;
+
+//Distances and shortest paths between all the cities, computed once in setup so that the planners
+//only index arrays. Cities are numbered by their id, like citiesIndex.
+class DistanceTable {
+
+	final int numCities;
+	//distance from x to y at x * numCities + y
+	private final double[] distance;
+	//cities after x on the path to y (the one of City.pathTo) at x * numCities + y
+	private final City[][] paths;
+
+	DistanceTable(City[] citiesIndex) {
+		numCities = citiesIndex.length;
+		distance = new double[numCities * numCities];
+		paths = new City[numCities * numCities][];
+		for (City x : citiesIndex) {
+			for (City y : citiesIndex) {
+				distance[x.id * numCities + y.id] = x.distanceTo(y);
+				List<City> path = x.pathTo(y);
+				paths[x.id * numCities + y.id] = path.toArray(new City[path.size()]);
+			}
+		}
+	}
+
+	public double distance(int from, int to) {
+		return distance[from * numCities + to];
+	}
+
+	//Cities to move through from from to to, without from, empty if they are the same
+	public City[] path(int from, int to) {
+		return paths[from * numCities + to];
+	}
+}
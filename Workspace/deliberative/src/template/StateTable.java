@@ -0,0 +1,153 @@
+package template;
+
+import java.util.Arrays;
+
+//Lowest cost found so far for every reached state, the duplicate detection of BFS and ASTAR.
+//Open addressing with linear probing: the packed words of the state at slot i are stored at
+//keys[i * stride] to keys[i * stride + stride - 1], its cost at costs[i], and used[i] tells whether
+//slot i is taken (an all-zero key is a valid state).
+class StateTable {
+
+	private final double loadFactor;
+	private final int stride;
+	private long[] keys;
+	private double[] costs;
+	private boolean[] used;
+	private int mask;
+	private int size;
+
+	//probe statistics: lookups, slots looked at and longest probe sequence
+	private long lookups;
+	private long probes;
+	private int maxProbe;
+
+	StateTable(double loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("The load factor must be between 0 and 1, not " + loadFactor);
+		this.loadFactor = loadFactor;
+		this.stride = 1 + setupParams.extraWords;
+		allocate(1024);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		allocate(1024);
+		size = 0;
+		lookups = 0;
+		probes = 0;
+		maxProbe = 0;
+	}
+
+	//Lowest cost stored for state, infinity if it was never reached
+	public double get(State state) {
+		int i = find(state);
+		return used[i] ? costs[i] : Double.POSITIVE_INFINITY;
+	}
+
+	//Stores cost for state if it is lower than the stored one, returns whether it was
+	public boolean improve(State state, double cost) {
+		int i = find(state);
+		if (used[i]) {
+			if (costs[i] <= cost)
+				return false;
+			costs[i] = cost;
+			return true;
+		}
+		used[i] = true;
+		keys[i * stride] = state.bits;
+		for (int w = 1; w < stride; w++) {
+			keys[i * stride + w] = state.more[w - 1];
+		}
+		costs[i] = cost;
+		if (++size > loadFactor * used.length)
+			grow();
+		return true;
+	}
+
+	public String stats() {
+		return String.format("State table: %d states in %d slots (%.1f MB), %.2f probes per lookup, longest probe %d",
+				size, used.length, (used.length * (8.0 * stride + 9)) / (1024 * 1024),
+				(lookups == 0) ? 0 : probes / (double) lookups, maxProbe);
+	}
+
+	//Slot of state, or the free slot where it belongs
+	private int find(State state) {
+		int i = hash(state) & mask;
+		int probe = 1;
+		while (used[i] && !matches(i, state)) {
+			i = (i + 1) & mask;
+			probe++;
+		}
+		lookups++;
+		probes += probe;
+		if (probe > maxProbe)
+			maxProbe = probe;
+		return i;
+	}
+
+	private boolean matches(int i, State state) {
+		if (keys[i * stride] != state.bits)
+			return false;
+		for (int w = 1; w < stride; w++) {
+			if (keys[i * stride + w] != state.more[w - 1])
+				return false;
+		}
+		return true;
+	}
+
+	private int hash(State state) {
+		long h = state.bits;
+		for (int w = 1; w < stride; w++) {
+			h = h * 0x9E3779B97F4A7C15L + state.more[w - 1];
+		}
+		return mix(h);
+	}
+
+	//Spreads the bits of a key over the low bits used for the slot (the mixer of MurmurHash3)
+	private static int mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldCosts = costs;
+		boolean[] oldUsed = used;
+		allocate(2 * oldUsed.length);
+		for (int j = 0; j < oldUsed.length; j++) {
+			if (!oldUsed[j])
+				continue;
+			int i = hash(oldKeys, j) & mask;
+			while (used[i]) {
+				i = (i + 1) & mask;
+			}
+			used[i] = true;
+			System.arraycopy(oldKeys, j * stride, keys, i * stride, stride);
+			costs[i] = oldCosts[j];
+		}
+	}
+
+	//Same hash as hash(State) for the key stored at slot j of keys
+	private int hash(long[] keys, int j) {
+		long h = keys[j * stride];
+		for (int w = 1; w < stride; w++) {
+			h = h * 0x9E3779B97F4A7C15L + keys[j * stride + w];
+		}
+		return mix(h);
+	}
+
+	private void allocate(int slots) {
+		keys = new long[slots * stride];
+		costs = new double[slots];
+		used = new boolean[slots];
+		Arrays.fill(costs, Double.POSITIVE_INFINITY);
+		mask = slots - 1;
+	}
+}
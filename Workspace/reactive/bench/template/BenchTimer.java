@@ -0,0 +1,41 @@
+package template;
+
+import java.lang.management.ManagementFactory;
+
+//Timing loop of the benchmarks: an operation is repeated for at least 200 ms, 5 times after a warm-up run,
+//and the best run is kept with the bytes allocated per operation by the benchmark thread during it.
+class BenchTimer {
+
+	private static final long MIN_RUN_NANOS = 200000000L;
+	private static final int RUNS = 5;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	//keeps the results of the operations alive so they are not optimized away
+	static double sink;
+
+	//Best nanoseconds per operation and bytes allocated per operation over the runs
+	static double[] measure(Runnable operation) {
+		double bestNanos = Double.POSITIVE_INFINITY;
+		double bytes = 0;
+		long thread = Thread.currentThread().getId();
+		for (int run = 0; run <= RUNS; run++) {
+			long allocated = THREADS.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			long operations = 0;
+			do {
+				operation.run();
+				operations++;
+			} while (System.nanoTime() - start < MIN_RUN_NANOS);
+			long nanos = System.nanoTime() - start;
+			//the first run only warms up
+			if (run == 0) continue;
+			if (nanos / (double) operations < bestNanos) {
+				bestNanos = nanos / (double) operations;
+				bytes = (THREADS.getThreadAllocatedBytes(thread) - allocated) / (double) operations;
+			}
+		}
+		return new double[] { bestNanos, bytes };
+	}
+}
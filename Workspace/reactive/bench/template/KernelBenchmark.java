@@ -0,0 +1,76 @@
+package template;
+
+import java.io.File;
+import java.util.Arrays;
+
+import logist.config.ParserException;
+import logist.config.Parsers;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+
+//Micro-benchmark of the Bellman backup kernel, scalar loop against the kernel selected by BackupKernel.
+//Times one sweep worth of the dot of FactoredValueIteration, E[V(c, .)] of every city (numCities^2
+//multiply-adds), on the model of every topology.
+//The bundled topologies get the task distribution of config/reactive.xml.
+//
+//Build and run from Workspace/reactive, with the vector kernel:
+//  javac --add-modules jdk.incubator.vector -sourcepath "" -implicit:none -cp "../logist/logist.jar:../logist/lib/*" -d bench-bin src/template/*.java src-vector/template/*.java bench/template/*.java
+//  java --add-modules jdk.incubator.vector -cp "bench-bin:../logist/logist.jar:../logist/lib/*" template.KernelBenchmark config/topology 100 300 1000
+//Without the two --add-modules and src-vector the kernel is the scalar one.
+public class KernelBenchmark {
+
+	public static void main(String[] args) throws ParserException {
+		if (args.length < 1) {
+			System.err.println("Usage: KernelBenchmark topology-directory [synthetic-size...]");
+			System.exit(-1);
+		}
+		BackupKernel scalar = new BackupKernel.Scalar();
+		BackupKernel kernel = BackupKernel.INSTANCE;
+		System.out.println("Kernel: " + kernel.name());
+		System.out.printf("%-16s %6s %12s %12s %8s%n", "topology", "cities", "dot scalar", "dot kernel", "speedup");
+
+		File[] files = new File(args[0]).listFiles();
+		Arrays.sort(files);
+		for (File file : files) {
+			Topology topology = Parsers.parseTopology(file.getPath());
+			run(file.getName().replace(".xml", ""), topology, SyntheticTopology.distribution(topology, 3590420242192152424L), scalar, kernel);
+		}
+		for (int i = 1; i < args.length; i++) {
+			int n = Integer.parseInt(args[i]);
+			Topology topology = SyntheticTopology.generate(n, n);
+			run("synthetic", topology, SyntheticTopology.distribution(topology, n), scalar, kernel);
+		}
+	}
+
+	private static void run(String name, Topology topology, TaskDistribution td, BackupKernel scalar, BackupKernel kernel) {
+		int n = topology.size();
+		TransitionModel model = new TransitionModel(topology, td, 5, false);
+		double[] V = new double[model.numStates];
+		for (int s = 0; s < V.length; s++) {
+			V[s] = s % 97;
+		}
+
+		double dotScalar = nanosPerElement(scalar, model, V);
+		double dotKernel = nanosPerElement(kernel, model, V);
+		System.out.printf("%-16s %6d %9.3f ns %9.3f ns %7.2fx%n", name, n, dotScalar, dotKernel, dotScalar / dotKernel);
+	}
+
+	//Best time per multiply-add of a sweep, as timed by BenchTimer
+	private static double nanosPerElement(final BackupKernel kernel, final TransitionModel model, final double[] V) {
+		return BenchTimer.measure(new Runnable() {
+			@Override
+			public void run() {
+				BenchTimer.sink += dotSweep(kernel, model, V);
+			}
+		})[0] / model.numStates;
+	}
+
+	private static double dotSweep(BackupKernel kernel, TransitionModel model, double[] V) {
+		int n = model.numCities;
+		double sum = 0;
+		for (int c = 0; c < n; c++) {
+			sum += kernel.dot(model.taskProbability, V, c * n, (c + 1) * n);
+		}
+		return sum;
+	}
+}
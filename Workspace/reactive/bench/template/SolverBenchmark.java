@@ -0,0 +1,116 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+
+//Benchmark of the reactive MDP solvers on synthetic topologies (SyntheticTopology), the baseline to
+//compare solver changes against. For every size and solver it measures:
+//- model: building the TransitionModel (with the successors for the sparse solver only, as in setup)
+//- sweep: one sweep over all the states, from the converged values
+//- solve: a full solve from V = 1
+//Each is timed by BenchTimer, and the best time per operation is reported with the bytes allocated per
+//operation by the benchmark thread and the allocation rate.
+//The sparse model needs O(numCities^3) memory, so the sparse solver only runs up to 100 cities.
+//
+//Build and run from Workspace/reactive:
+//  javac -sourcepath "" -implicit:none -cp "../logist/logist.jar:../logist/lib/*" -d bench-bin src/template/*.java bench/template/*.java
+//  java -Xmx4g -cp "bench-bin:../logist/logist.jar:../logist/lib/*" template.SolverBenchmark -solvers SPARSE,FACTORED 10 30 100 300 1000
+//Options: -degree nearest cities linked to each city (3), -tasks share of destinations with tasks (1),
+//-discount (0.95), -solvers (SPARSE,FACTORED).
+public class SolverBenchmark {
+
+	private static final int MAX_SPARSE_CITIES = 100;
+
+	public static void main(String[] args) {
+		int degree = 3;
+		double taskDensity = 1;
+		double discount = 0.95;
+		String solvers = "SPARSE,FACTORED";
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-degree")) degree = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-tasks")) taskDensity = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-discount")) discount = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-solvers")) solvers = args[++i];
+			else sizes.add(Integer.parseInt(args[i]));
+		}
+		if (sizes.isEmpty()) {
+			System.err.println("Usage: SolverBenchmark [-degree d] [-tasks density] [-discount d] [-solvers S,...] size...");
+			System.exit(-1);
+		}
+
+		System.out.printf("%6s %6s %-16s %-6s %12s %8s %14s %10s%n", "cities", "routes", "solver", "op", "time",
+				"sweeps", "alloc/op", "alloc rate");
+		for (int n : sizes) {
+			Topology topology = SyntheticTopology.generate(n, degree, n);
+			TaskDistribution td = SyntheticTopology.distribution(topology, taskDensity, n);
+			for (String name : solvers.split(",")) {
+				ReactiveTemplate.Solver solver = ReactiveTemplate.Solver.valueOf(name.trim().toUpperCase());
+				if (solver == ReactiveTemplate.Solver.SPARSE && n > MAX_SPARSE_CITIES) continue;
+				run(topology, td, solver, discount);
+			}
+		}
+	}
+
+	private static void run(final Topology topology, final TaskDistribution td, final ReactiveTemplate.Solver solver,
+			final double discount) {
+		final boolean withSuccessors = solver == ReactiveTemplate.Solver.SPARSE;
+		final TransitionModel model = new TransitionModel(topology, td, 5, withSuccessors);
+		final ValueIteration solved = create(solver, topology, td, model, discount);
+		solved.solve();
+		final int iterations = solved.iterations;
+
+		if (solver != ReactiveTemplate.Solver.AGGREGATED) {
+			report(topology, solver, "model", 0, BenchTimer.measure(new Runnable() {
+				@Override
+				public void run() {
+					new TransitionModel(topology, td, 5, withSuccessors);
+				}
+			}));
+			report(topology, solver, "sweep", 1, BenchTimer.measure(new Runnable() {
+				@Override
+				public void run() {
+					solved.sweep();
+				}
+			}));
+		}
+		report(topology, solver, "solve", iterations, BenchTimer.measure(new Runnable() {
+			@Override
+			public void run() {
+				create(solver, topology, td, model, discount).solve();
+			}
+		}));
+	}
+
+	//same solvers as ReactiveTemplate, with its default properties
+	private static ValueIteration create(ReactiveTemplate.Solver solver, Topology topology, TaskDistribution td,
+			TransitionModel model, double discount) {
+		switch (solver) {
+		case SPARSE:
+			return new ValueIteration(model, discount, 0.00001);
+		case FACTORED:
+			return new FactoredValueIteration(model, discount, 0.00001);
+		case POLICY_ITERATION:
+			return new PolicyIteration(model, discount, 0.00001, 20);
+		case PRIORITIZED:
+			return new PrioritizedSweeping(model, discount, 0.00001);
+		case AGGREGATED:
+			return new StateAggregation(topology, td, model.cost, discount, 0.00001, 20, 20);
+		default:
+			throw new AssertionError("Should not happen.");
+		}
+	}
+
+	private static void report(Topology topology, ReactiveTemplate.Solver solver, String operation, int sweeps, double[] result) {
+		int routes = 0;
+		for (Topology.City c : topology) {
+			routes += c.neighbors().size();
+		}
+		System.out.printf("%6d %6d %-16s %-6s %9.3f ms %8s %11.1f KB %5.0f MB/s%n", topology.size(), routes / 2, solver,
+				operation, result[0] / 1e6, (sweeps > 0) ? Integer.toString(sweeps) : "", result[1] / 1024,
+				result[1] / result[0] * 1e9 / (1024 * 1024));
+	}
+}
@@ -0,0 +1,94 @@
+package template;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import logist.Measures;
+import logist.task.DefaultTaskDistribution;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Random maps for the benchmarks, shaped like the bundled ones: cities on a 600 x 600 map linked to their
+//3 nearest cities (and to the nearest earlier city, which keeps the map connected), routes twice as long
+//in km as on the map, and tasks drawn like in config/reactive.xml.
+//The number of nearest cities (the density of the map) and the share of destinations a city has tasks
+//for (the density of the task distribution) can be changed.
+class SyntheticTopology {
+
+	static Topology generate(int numCities, long seed) {
+		return generate(numCities, 3, seed);
+	}
+
+	static Topology generate(int numCities, int degree, long seed) {
+		Random random = new Random(seed);
+		int[] x = new int[numCities];
+		int[] y = new int[numCities];
+		Topology.Builder builder = new Topology.Builder();
+		for (int i = 0; i < numCities; i++) {
+			x[i] = random.nextInt(600);
+			y[i] = random.nextInt(600);
+			builder.addCity("City " + i, x[i], y[i]);
+		}
+
+		Set<Long> routes = new HashSet<Long>();
+		double[] distance = new double[numCities];
+		Integer[] order = new Integer[numCities];
+		for (int i = 0; i < numCities; i++) {
+			for (int j = 0; j < numCities; j++) {
+				distance[j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+				order[j] = j;
+			}
+			final double[] d = distance;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(d[a], d[b]);
+				}
+			});
+			for (int k = 1; k <= Math.min(degree, numCities - 1); k++) {
+				addRoute(builder, routes, numCities, i, order[k], distance[order[k]]);
+			}
+			for (int k = 1; k < numCities; k++) {
+				if (order[k] < i) {
+					addRoute(builder, routes, numCities, i, order[k], distance[order[k]]);
+					break;
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	private static void addRoute(Topology.Builder builder, Set<Long> routes, int numCities, int i, int j, double distance) {
+		if (!routes.add((long) Math.min(i, j) * numCities + Math.max(i, j))) return;
+		builder.addRoute("City " + i, "City " + j, (long) (2 * distance * Measures.DISTANCE_UNITS_PER_KM) + 1);
+	}
+
+	//uniform task probabilities, rewards between 1000 and 99999 and 20 to 40% of no task
+	static TaskDistribution distribution(Topology topology, long seed) {
+		return distribution(topology, 1, seed);
+	}
+
+	//same with tasks to a random share taskDensity of the destinations only, at least one per city
+	static TaskDistribution distribution(Topology topology, double taskDensity, long seed) {
+		Random random = new Random(seed);
+		int n = topology.size();
+		double[][] probability = new double[n][n];
+		double[][] reward = new double[n][n];
+		double[][] weight = new double[n][n];
+		double[] noTask = new double[n];
+		for (City from : topology) {
+			noTask[from.id] = 0.2 + 0.2 * random.nextDouble();
+			for (City to : topology) {
+				probability[from.id][to.id] = random.nextDouble();
+				if (taskDensity < 1 && random.nextDouble() >= taskDensity && to.id != (from.id + 1) % n) probability[from.id][to.id] = 0;
+				reward[from.id][to.id] = 1000 + random.nextInt(99000);
+				weight[from.id][to.id] = 3;
+			}
+		}
+		return new DefaultTaskDistribution(topology, random, probability, reward, weight, noTask);
+	}
+}
@@ -0,0 +1,45 @@
+package template;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//SIMD kernel of the Bellman backups on jdk.incubator.vector, loaded by BackupKernel if available.
+//Compile with javac --add-modules jdk.incubator.vector and run with the same option.
+//The lanes accumulate separately and are added at the end, so the sums may differ from the scalar
+//loop in the last bits. Ranges shorter than MIN_LENGTH, e.g. the rows of the bundled topologies, run a
+//scalar loop, the cost of the lane reduction is not worth it there.
+//There is no gather: the vector gather load (DoubleVector.fromArray with an index map) made the C2
+//compiled code of JDK 17 crash with SIGSEGV on AVX-512, so the sparse backup stays scalar.
+class VectorBackupKernel extends BackupKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final int MIN_LENGTH = 4 * SPECIES.length();
+
+	public VectorBackupKernel() {
+		if (SPECIES.length() < 2) throw new UnsupportedOperationException("No vector registers for doubles");
+	}
+
+	@Override
+	double dot(double[] a, double[] b, int from, int to) {
+		int i = from;
+		double sum = 0;
+		if (to - from >= MIN_LENGTH) {
+			DoubleVector lanes = DoubleVector.zero(SPECIES);
+			for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+				lanes = lanes.add(DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)));
+			}
+			sum = lanes.reduceLanes(VectorOperators.ADD);
+		}
+		double tail = 0;
+		for (; i < to; i++) {
+			tail += a[i] * b[i];
+		}
+		return sum + tail;
+	}
+
+	@Override
+	String name() {
+		return "vector " + SPECIES.length() + "x double";
+	}
+}
@@ -0,0 +1,49 @@
+package template;
+
+//Inner loop of the factored Bellman backups: the dot product of the task probabilities of a city with the
+//values of its row. The sparse backup of ValueIteration keeps its own scalar loop.
+//INSTANCE is chosen once at startup: the SIMD kernel of src-vector (VectorBackupKernel, built on
+//jdk.incubator.vector) when it is on the class path and the JVM runs with --add-modules jdk.incubator.vector,
+//the scalar loop otherwise. -Dtemplate.kernel=scalar forces the scalar loop.
+//
+//To use the SIMD kernel on the platform, build both source roots into bin/ and launch with the module,
+//from Workspace/reactive:
+//  javac --add-modules jdk.incubator.vector -sourcepath "" -implicit:none -cp "../logist/logist.jar:../logist/lib/*" -d bin src/template/*.java src-vector/template/*.java
+//  java --add-modules jdk.incubator.vector -jar ../logist/logist.jar config/reactive.xml reactive-factored
+abstract class BackupKernel {
+
+	static final BackupKernel INSTANCE = create();
+
+	//sum of a[i] * b[i] for i in [from, to)
+	abstract double dot(double[] a, double[] b, int from, int to);
+
+	abstract String name();
+
+	private static BackupKernel create() {
+		if (!"scalar".equals(System.getProperty("template.kernel"))) {
+			try {
+				return (BackupKernel) Class.forName("template.VectorBackupKernel").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+				//not built, module not added or no vector registers, the scalar loops are used
+			}
+		}
+		return new Scalar();
+	}
+
+	static class Scalar extends BackupKernel {
+
+		@Override
+		double dot(double[] a, double[] b, int from, int to) {
+			double sum = 0;
+			for (int i = from; i < to; i++) {
+				sum += a[i] * b[i];
+			}
+			return sum;
+		}
+
+		@Override
+		String name() {
+			return "scalar";
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package template;
+
+import java.util.concurrent.RecursiveAction;
+
+//Value iteration exploiting the structure of the reactive MDP: an action ending in city tx leads to
+//(tx, ty) with probability td.probability(tx, ty) whatever the state it was taken from.
+//The expected next value E[V(tx, .)] is therefore shared by every action ending in tx, it is computed
+//once per city per sweep and kept up to date as V changes. A sweep costs O(n^2) for the expected values
+//plus one multiply-add per (state, action) pair, and the successor arrays of the model are not needed.
+class FactoredValueIteration extends ValueIteration {
+
+	//E[V(c, .)] for every city c
+	double[] expected;
+	final BackupKernel kernel = BackupKernel.INSTANCE;
+
+	public FactoredValueIteration(TransitionModel model, double discount, double eps) {
+		super(model, discount, eps);
+	}
+
+	@Override
+	void beginSweep() {
+		if (expected == null) expected = new double[model.numCities];
+		if (pool != null) {
+			pool.invoke(new ExpectationTask(0, model.numCities));
+		} else {
+			computeExpected(0, model.numCities);
+		}
+	}
+
+	private void computeExpected(int from, int to) {
+		int n = model.numCities;
+		for (int c = from; c < to; c++) {
+			expected[c] = kernel.dot(model.taskProbability, V, c * n, (c + 1) * n);
+		}
+	}
+
+	@Override
+	void update(int s, double value) {
+		//keep the sweep Gauss-Seidel
+		expected[s / model.numCities] += model.taskProbability[s] * (value - V[s]);
+		V[s] = value;
+	}
+
+	@Override
+	double backup(int s) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+			double q = model.reward[sa] + discount * expected[model.targetOf[sa]];
+			if (q > max) {
+				max = q;
+				policy[s] = model.actionOf[sa];
+			}
+		}
+		return max;
+	}
+
+	private class ExpectationTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		ExpectationTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from) * model.numCities <= 4096) {
+				computeExpected(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ExpectationTask(from, mid), new ExpectationTask(mid, to));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package template;
+
+import java.util.Arrays;
+
+//Factored value iteration for several discount factors at once.
+//The values of the K discounts of a state are stored next to each other, V[s * K + k], and so are the
+//expected values E[V(c, .)], so a sweep walks the (state, action) pairs of the model once and every
+//pair is backed up for all the discounts from the same cache lines.
+//Each discount stops being backed up once its own sweep changes V by less than eps, its values and
+//policy are then exactly those of a FactoredValueIteration with that discount.
+class MultiDiscountValueIteration {
+
+	final TransitionModel model;
+	final double[] discounts;
+	final double eps;
+
+	//V[s * discounts.length + k]
+	double[] V;
+	//greedy action of each state for each discount, policies[k][s]
+	int[][] policies;
+	//sweeps needed by each discount
+	int[] iterations;
+	double[] residual;
+	//number of Bellman backups of a single state for a single discount
+	long backups;
+	long elapsedMillis;
+
+	//E[V(c, .)] at c * discounts.length + k
+	private double[] expected;
+
+	public MultiDiscountValueIteration(TransitionModel model, double[] discounts, double eps) {
+		this.model = model;
+		this.discounts = discounts.clone();
+		this.eps = eps;
+	}
+
+	public void solve() {
+		long start = System.currentTimeMillis();
+		int K = discounts.length;
+
+		V = new double[model.numStates * K];
+		policies = new int[K][model.numStates];
+		iterations = new int[K];
+		residual = new double[K];
+		backups = 0;
+
+		//discounts still iterating, their values are packed with stride m in work
+		int m = K;
+		int[] active = new int[K];
+		double[] gamma = discounts.clone();
+		for (int k = 0; k < K; k++) {
+			active[k] = k;
+		}
+		double[] work = new double[model.numStates * m];
+		Arrays.fill(work, 1);
+		double[] diff = new double[K];
+
+		while (m > 1) {
+			sweep(work, m, gamma, active, diff);
+			backups += (long) model.numStates * m;
+
+			//retire the discounts that converged and repack the others
+			int[] kept = new int[m];
+			int numKept = 0;
+			for (int j = 0; j < m; j++) {
+				int k = active[j];
+				iterations[k]++;
+				if (diff[j] <= eps) {
+					residual[k] = diff[j];
+					for (int s = 0; s < model.numStates; s++) {
+						V[s * K + k] = work[s * m + j];
+					}
+				} else {
+					kept[numKept++] = j;
+				}
+			}
+			if (numKept < m) {
+				//in place, a value only ever moves to a lower index
+				for (int s = 0; s < model.numStates; s++) {
+					for (int i = 0; i < numKept; i++) {
+						work[s * numKept + i] = work[s * m + kept[i]];
+					}
+				}
+				for (int i = 0; i < numKept; i++) {
+					active[i] = active[kept[i]];
+					gamma[i] = gamma[kept[i]];
+				}
+			}
+			m = numKept;
+		}
+		if (m == 1) {
+			//nothing left to share, the last discount finishes with the plain factored sweeps
+			int k = active[0];
+			double[] values = Arrays.copyOf(work, model.numStates);
+			FactoredValueIteration vi = new FactoredValueIteration(model, discounts[k], eps);
+			vi.solve(values);
+			iterations[k] += vi.iterations;
+			backups += vi.backups;
+			residual[k] = vi.residual;
+			policies[k] = vi.policy;
+			for (int s = 0; s < model.numStates; s++) {
+				V[s * K + k] = vi.V[s];
+			}
+		}
+		expected = null;
+		elapsedMillis = System.currentTimeMillis() - start;
+	}
+
+	//One Gauss-Seidel sweep of the m discounts packed in work, stores their max-norm change in diff
+	private void sweep(double[] work, int m, double[] gamma, int[] active, double[] diff) {
+		int n = model.numCities;
+		if (expected == null || expected.length < n * m) expected = new double[n * m];
+		Arrays.fill(expected, 0);
+		for (int s = 0; s < model.numStates; s++) {
+			double p = model.taskProbability[s];
+			if (p == 0) continue;
+			int x = (s / n) * m;
+			for (int j = 0; j < m; j++) {
+				expected[x + j] += p * work[s * m + j];
+			}
+		}
+
+		double[] max = new double[m];
+		int[] best = new int[m];
+		Arrays.fill(diff, 0);
+		for (int s = 0; s < model.numStates; s++) {
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+			for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+				double r = model.reward[sa];
+				int t = model.targetOf[sa] * m;
+				for (int j = 0; j < m; j++) {
+					double q = r + gamma[j] * expected[t + j];
+					if (q > max[j]) {
+						max[j] = q;
+						best[j] = sa;
+					}
+				}
+			}
+			int x = (s / n) * m;
+			double p = model.taskProbability[s];
+			for (int j = 0; j < m; j++) {
+				policies[active[j]][s] = model.actionOf[best[j]];
+				double old = work[s * m + j];
+				if (Math.abs(max[j] - old) > diff[j]) diff[j] = Math.abs(max[j] - old);
+				expected[x + j] += p * (max[j] - old);
+				work[s * m + j] = max[j];
+			}
+		}
+	}
+
+	//Values of the k-th discount, in the layout of ValueIteration.V
+	public double[] values(int k) {
+		int K = discounts.length;
+		double[] values = new double[model.numStates];
+		for (int s = 0; s < model.numStates; s++) {
+			values[s] = V[s * K + k];
+		}
+		return values;
+	}
+
+	public String stats(int k) {
+		return String.format("%s discount %.4f: %d iterations, residual %.3g",
+				getClass().getSimpleName(), discounts[k], iterations[k], residual[k]);
+	}
+
+	public String stats() {
+		return String.format("%s (%d discounts): %d backups, %d ms",
+				getClass().getSimpleName(), discounts.length, backups, elapsedMillis);
+	}
+}
@@ -0,0 +1,83 @@
+package template;
+
+import logist.config.ParserException;
+import logist.config.Parsers;
+import logist.simulation.Manager;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+
+//Solves the reactive MDP of a configuration for a grid of costs per km and discount factors.
+//Each setting is warm-started from the values of the previous one, which is much cheaper than
+//starting over from V = 1 when the settings are close.
+//
+//Usage: ParameterSweep config.xml discount[,discount...] cost[,cost...] [-cold] [-batched]
+//With -cold every setting is also solved from scratch to compare.
+//With -batched all the discounts of a cost are solved together in a single pass instead.
+public class ParameterSweep {
+
+	public static void main(String[] args) throws ParserException {
+		if (args.length < 3) {
+			System.err.println("Usage: ParameterSweep config.xml discount[,discount...] cost[,cost...] [-cold] [-batched]");
+			System.exit(-1);
+		}
+		double[] discounts = parseList(args[1]);
+		double[] costs = parseList(args[2]);
+		boolean cold = false;
+		boolean batched = false;
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("-cold")) cold = true;
+			else if (args[i].equals("-batched")) batched = true;
+			else throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+
+		// no agent is loaded, only the topology and the task distribution are needed
+		Manager manager = Parsers.parseConfiguration(args[0], null, new String[0]);
+		Topology topology = manager.getTopology();
+		TaskDistribution td = manager.getTaskDistribution();
+
+		TransitionModel base = new TransitionModel(topology, td, costs[0], false);
+		if (batched) {
+			for (double cost : costs) {
+				MultiDiscountValueIteration vi = new MultiDiscountValueIteration(base.withCost(cost), discounts, 0.00001);
+				vi.solve();
+				for (int k = 0; k < discounts.length; k++) {
+					System.out.printf("cost %.2f %s%n", cost, vi.stats(k));
+				}
+				System.out.printf("cost %.2f %s%n", cost, vi.stats());
+			}
+			return;
+		}
+		double[] previous = null;
+		long warmBackups = 0;
+		long coldBackups = 0;
+		for (double cost : costs) {
+			TransitionModel model = base.withCost(cost);
+			for (double discount : discounts) {
+				ValueIteration vi = new FactoredValueIteration(model, discount, 0.00001);
+				vi.solve(previous);
+				previous = vi.V;
+				warmBackups += vi.backups;
+				System.out.printf("cost %.2f discount %.4f: %s%n", cost, discount, vi.stats());
+
+				if (cold) {
+					ValueIteration reference = new FactoredValueIteration(model, discount, 0.00001);
+					reference.solve();
+					coldBackups += reference.backups;
+					System.out.printf("cost %.2f discount %.4f: %s%n", cost, discount, reference.stats());
+				}
+			}
+		}
+		System.out.printf("%d settings, %d backups warm-started", costs.length * discounts.length, warmBackups);
+		if (cold) System.out.printf(", %d backups from scratch", coldBackups);
+		System.out.println();
+	}
+
+	static double[] parseList(String list) {
+		String[] parts = list.split(",");
+		double[] values = new double[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Double.parseDouble(parts[i].trim());
+		}
+		return values;
+	}
+}
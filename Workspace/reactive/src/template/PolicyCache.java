@@ -0,0 +1,166 @@
+package template;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//On-disk cache of solved reactive policies.
+//An entry is keyed by a SHA-256 digest of everything the policy depends on: the cities, their coordinates
+//and routes, the task probabilities and rewards, the cost per km, the discount and eps.
+//The file name is derived from the digest and the full digest is stored in the header, so an entry
+//whose inputs changed is never returned. Files are memory-mapped on load and written atomically.
+//Layout: magic, version, digest (32 bytes), numStates, V (numStates doubles), policy (numStates ints).
+class PolicyCache {
+
+	private static final int MAGIC = 0x52504331; // "RPC1"
+	private static final int VERSION = 1;
+	private static final int HEADER = 4 + 4 + 32 + 4;
+
+	private final Path directory;
+
+	double[] V;
+	int[] policy;
+
+	public PolicyCache(String directory) {
+		this.directory = Paths.get(directory);
+	}
+
+	public static byte[] key(Topology topology, TaskDistribution td, double cost, double discount, double eps) {
+		return key(topology, td, cost, discount, eps, "");
+	}
+
+	//variant tells apart policies that are not the optimal one, e.g. the approximate solver and its settings
+	public static byte[] key(Topology topology, TaskDistribution td, double cost, double discount, double eps, String variant) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+		if (!variant.isEmpty()) {
+			try {
+				digest.update(variant.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new AssertionError(e);
+			}
+		}
+		int n = topology.size();
+		ByteBuffer buffer = ByteBuffer.allocate(8 * (2 * n + 2));
+		buffer.putInt(VERSION).putInt(n).putDouble(cost).putDouble(discount).putDouble(eps);
+		digest.update(buffer.array(), 0, buffer.position());
+		for (City x : topology) {
+			buffer.clear();
+			buffer.putInt(x.id).putInt(x.xPos).putInt(x.yPos);
+			digest.update(buffer.array(), 0, buffer.position());
+			try {
+				digest.update(x.name.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new AssertionError(e);
+			}
+			//routes
+			buffer.clear();
+			for (City y : x) {
+				buffer.putInt(y.id).putDouble(x.distanceTo(y));
+				if (buffer.remaining() < 12) {
+					digest.update(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+			}
+			digest.update(buffer.array(), 0, buffer.position());
+			//task distribution from x
+			buffer.clear();
+			buffer.putDouble(td.probability(x, null));
+			for (City y : topology) {
+				buffer.putDouble(td.probability(x, y)).putDouble(td.reward(x, y));
+				if (buffer.remaining() < 16) {
+					digest.update(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+			}
+			digest.update(buffer.array(), 0, buffer.position());
+		}
+		return digest.digest();
+	}
+
+	//Loads the entry of key into V and policy, returns false if there is no valid entry
+	public boolean load(byte[] key, int numStates) {
+		Path file = fileOf(key);
+		if (!Files.isRegularFile(file)) return false;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = HEADER + (long) numStates * 12;
+			if (channel.size() != size) return false;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			byte[] stored = new byte[32];
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return false;
+			buffer.get(stored);
+			if (!Arrays.equals(stored, key) || buffer.getInt() != numStates) {
+				System.out.println("Stale policy cache entry " + file);
+				return false;
+			}
+			V = new double[numStates];
+			policy = new int[numStates];
+			buffer.asDoubleBuffer().get(V);
+			buffer.position(buffer.position() + numStates * 8);
+			buffer.asIntBuffer().get(policy);
+			return true;
+		} catch (IOException e) {
+			System.out.println("Could not read policy cache entry " + file + ": " + e);
+			return false;
+		}
+	}
+
+	public void store(byte[] key, double[] V, int[] policy) {
+		Path file = fileOf(key);
+		Path tmp = null;
+		try {
+			Files.createDirectories(directory);
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER + V.length * 12);
+			buffer.putInt(MAGIC).putInt(VERSION).put(key).putInt(V.length);
+			buffer.asDoubleBuffer().put(V);
+			buffer.position(buffer.position() + V.length * 8);
+			buffer.asIntBuffer().put(policy);
+			buffer.rewind();
+			//write next to the entry and move it in place, so that concurrent runs never see half a file
+			tmp = Files.createTempFile(directory, "policy", ".tmp");
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			tmp = null;
+		} catch (IOException e) {
+			System.out.println("Could not write policy cache entry " + file + ": " + e);
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException e) {
+					//nothing left to do
+				}
+			}
+		}
+	}
+
+	private Path fileOf(byte[] key) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 16; i++) {
+			name.append(String.format("%02x", key[i]));
+		}
+		return directory.resolve(name.append(".policy").toString());
+	}
+}
@@ -0,0 +1,367 @@
+package template;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import logist.agent.Agent;
+import logist.agent.AgentStatistics;
+import logist.config.ParserException;
+import logist.config.Parsers;
+import logist.config.XMLTag;
+import logist.simulation.Manager;
+import logist.simulation.Vehicle;
+import logist.task.TaskDistribution;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Evaluates the policy of ReactiveTemplate without the platform: the vehicle follows the policy table
+//for a number of actions, the tasks being drawn like the platform draws them, and this is repeated
+//for a number of seeds in parallel. The net reward (task rewards minus costs) per km and per action
+//is reported with its 95% confidence interval over the seeds.
+//All the settings are simulated with the same seeds, so their differences are less noisy than the
+//intervals suggest.
+//
+//Usage: PolicyEvaluator config.xml steps seeds [name=value[,value...] ...]
+//The name=value pairs are agent properties (discount-factor, solver, ...), every combination of the
+//listed values is evaluated. cost-per-km (default 5) and home (default the first city) set the vehicle.
+public class PolicyEvaluator {
+
+	//97.5% quantiles of Student's t distribution for 1 to 30 degrees of freedom, the normal one beyond
+	private static final double[] T975 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+			2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069,
+			2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+	private final int numCities;
+	//probability of a task to y or less in x at x * numCities + y, in the order the platform draws them
+	private final double[] cumulative;
+	private final double[] reward;
+	private final double[] km;
+
+	PolicyEvaluator(Topology topology, TaskDistribution td) {
+		numCities = topology.size();
+		cumulative = new double[numCities * numCities];
+		reward = new double[numCities * numCities];
+		km = new double[numCities * numCities];
+		for (City x : topology) {
+			double p = 0;
+			for (City y : topology) {
+				int s = x.id * numCities + y.id;
+				p += td.probability(x, y);
+				cumulative[s] = p;
+				reward[s] = td.reward(x, y);
+				km[s] = x.distanceTo(y);
+			}
+		}
+	}
+
+	//Net reward per km and per action of one vehicle following policy from home, for each seed
+	Estimate[] evaluate(final int[] policy, final int home, final double costPerKm, final int steps,
+			long[] seeds, ForkJoinPool pool) {
+		List<Callable<double[]>> runs = new ArrayList<Callable<double[]>>();
+		for (final long seed : seeds) {
+			runs.add(new Callable<double[]>() {
+				@Override
+				public double[] call() {
+					return simulate(policy, home, costPerKm, steps, seed);
+				}
+			});
+		}
+		double[] perKm = new double[seeds.length];
+		double[] perAction = new double[seeds.length];
+		try {
+			List<Future<double[]>> results = pool.invokeAll(runs);
+			for (int i = 0; i < seeds.length; i++) {
+				perKm[i] = results.get(i).get()[0];
+				perAction[i] = results.get(i).get()[1];
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Could not simulate the policy", e);
+		}
+		return new Estimate[] { new Estimate(perKm), new Estimate(perAction) };
+	}
+
+	private double[] simulate(int[] policy, int home, double costPerKm, int steps, long seed) {
+		Random random = new Random(seed);
+		int x = home;
+		double totalReward = 0;
+		double totalKm = 0;
+		for (int step = 0; step < steps; step++) {
+			//first y with a cumulative probability of at least u, no task (y = x) if there is none
+			double u = random.nextDouble();
+			int low = x * numCities;
+			int high = low + numCities;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (cumulative[mid] < u) low = mid + 1;
+				else high = mid;
+			}
+			int y = (low < (x + 1) * numCities) ? low - x * numCities : x;
+
+			int a = policy[x * numCities + y];
+			if (a == numCities) {
+				//Pick and deliver
+				totalReward += reward[x * numCities + y];
+				totalKm += km[x * numCities + y];
+				x = y;
+			} else {
+				totalKm += km[x * numCities + a];
+				x = a;
+			}
+		}
+		double profit = totalReward - totalKm * costPerKm;
+		return new double[] { profit / totalKm, profit / steps };
+	}
+
+	//Mean of a sample and the half width of its 95% confidence interval
+	static class Estimate {
+		final double mean;
+		final double halfWidth;
+
+		Estimate(double[] sample) {
+			int m = sample.length;
+			double sum = 0;
+			for (double v : sample) sum += v;
+			mean = sum / m;
+			double squares = 0;
+			for (double v : sample) squares += (v - mean) * (v - mean);
+			double t = (m - 1 <= T975.length) ? T975[m - 2] : 1.96;
+			halfWidth = t * Math.sqrt(squares / (m - 1) / m);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%.3f +- %.3f", mean, halfWidth);
+		}
+	}
+
+	public static void main(String[] args) throws ParserException {
+		if (args.length < 3) {
+			System.err.println("Usage: PolicyEvaluator config.xml steps seeds [name=value[,value...] ...]");
+			System.exit(-1);
+		}
+		int steps = Integer.parseInt(args[1]);
+		int numSeeds = Integer.parseInt(args[2]);
+		if (steps < 1 || numSeeds < 2) throw new IllegalArgumentException("At least 1 step and 2 seeds are needed");
+		Map<String, String[]> grid = new LinkedHashMap<String, String[]>();
+		for (int i = 3; i < args.length; i++) {
+			int eq = args[i].indexOf('=');
+			if (eq <= 0) throw new IllegalArgumentException("Expected name=value instead of " + args[i]);
+			grid.put(args[i].substring(0, eq), args[i].substring(eq + 1).split(","));
+		}
+		//the policy table is read right after setup, a background solve would leave the fallback or nothing
+		if (grid.containsKey("background-solve"))
+			throw new IllegalArgumentException("background-solve is not supported, the policy is solved in setup");
+
+		// no agent is loaded, only the topology and the task distribution are needed
+		Manager manager = Parsers.parseConfiguration(args[0], null, new String[0]);
+		Topology topology = manager.getTopology();
+		TaskDistribution td = manager.getTaskDistribution();
+		PolicyEvaluator evaluator = new PolicyEvaluator(topology, td);
+
+		long[] seeds = new long[numSeeds];
+		for (int i = 0; i < numSeeds; i++) {
+			seeds[i] = i + 1;
+		}
+		String[] names = grid.keySet().toArray(new String[0]);
+		int[] choice = new int[names.length];
+		ForkJoinPool pool = new ForkJoinPool();
+		long start = System.currentTimeMillis();
+		int evaluations = 0;
+		try {
+			do {
+				Map<String, String> properties = new LinkedHashMap<String, String>();
+				for (int i = 0; i < names.length; i++) {
+					properties.put(names[i], grid.get(names[i])[choice[i]]);
+				}
+				int costPerKm = XMLTag.convert(properties, "cost-per-km", "vehicle", Integer.class, 5);
+				String homeName = XMLTag.convert(properties, "home", "vehicle", String.class, topology.cities().get(0).name);
+				City home = null;
+				for (City c : topology) {
+					if (c.name.equals(homeName)) home = c;
+				}
+				if (home == null) throw new IllegalArgumentException("Unknown city " + homeName);
+
+				long solveStart = System.nanoTime();
+				ReactiveTemplate behavior = new ReactiveTemplate();
+				behavior.setup(topology, td, new EvaluatedAgent(properties, new EvaluatedVehicle(home, costPerKm)));
+				long evaluationStart = System.nanoTime();
+				Estimate[] result = evaluator.evaluate(behavior.vehiclePolicy[0].toArray(), home.id, costPerKm, steps, seeds, pool);
+				long end = System.nanoTime();
+				evaluations++;
+				System.out.printf(Locale.ROOT, "%s: reward per km %s, per action %s (setup %.1f ms, simulation %.1f ms)%n",
+						properties, result[0], result[1], (evaluationStart - solveStart) / 1e6, (end - evaluationStart) / 1e6);
+			} while (next(choice, names, grid));
+		} finally {
+			pool.shutdown();
+		}
+		double minutes = (System.currentTimeMillis() - start) / 60000.0;
+		System.out.printf(Locale.ROOT, "%d settings, %d seeds of %d actions each, %.0f evaluations per minute%n",
+				evaluations, numSeeds, steps, evaluations / minutes);
+	}
+
+	//Advances choice to the next combination of values, false after the last one
+	private static boolean next(int[] choice, String[] names, Map<String, String[]> grid) {
+		for (int i = names.length - 1; i >= 0; i--) {
+			if (++choice[i] < grid.get(names[i]).length) return true;
+			choice[i] = 0;
+		}
+		return false;
+	}
+
+	//The agent seen by ReactiveTemplate.setup: its properties and a single vehicle
+	private static class EvaluatedAgent implements Agent {
+		private final Map<String, String> properties;
+		private final List<Vehicle> vehicles;
+
+		EvaluatedAgent(Map<String, String> properties, Vehicle vehicle) {
+			this.properties = properties;
+			this.vehicles = Collections.singletonList(vehicle);
+		}
+
+		@Override
+		public <T> T readProperty(String paramName, Class<T> clazz, T default_) {
+			try {
+				return XMLTag.convert(properties, paramName, "agent", clazz, default_);
+			} catch (ParserException pEx) {
+				throw new RuntimeException("parameter conversion failed", pEx);
+			}
+		}
+
+		@Override
+		public List<Vehicle> vehicles() {
+			return vehicles;
+		}
+
+		@Override
+		public int id() {
+			return 0;
+		}
+
+		@Override
+		public String name() {
+			return "evaluated";
+		}
+
+		@Override
+		public TaskSet getTasks() {
+			return null;
+		}
+
+		@Override
+		public long getTotalDistanceUnits() {
+			return 0;
+		}
+
+		@Override
+		public double getTotalDistance() {
+			return 0;
+		}
+
+		@Override
+		public long getTotalCost() {
+			return 0;
+		}
+
+		@Override
+		public long getTotalReward() {
+			return 0;
+		}
+
+		@Override
+		public long getTotalProfit() {
+			return 0;
+		}
+
+		@Override
+		public int getTotalTasks() {
+			return 0;
+		}
+
+		@Override
+		public int compareTo(AgentStatistics that) {
+			return 0;
+		}
+	}
+
+	//The vehicle as it is before its first action, only its cost per km and its id matter to setup
+	private static class EvaluatedVehicle implements Vehicle {
+		private final City home;
+		private final int costPerKm;
+
+		EvaluatedVehicle(City home, int costPerKm) {
+			this.home = home;
+			this.costPerKm = costPerKm;
+		}
+
+		@Override
+		public int id() {
+			return 0;
+		}
+
+		@Override
+		public String name() {
+			return "Vehicle 1";
+		}
+
+		@Override
+		public int capacity() {
+			return 30;
+		}
+
+		@Override
+		public City homeCity() {
+			return home;
+		}
+
+		@Override
+		public double speed() {
+			return 220;
+		}
+
+		@Override
+		public int costPerKm() {
+			return costPerKm;
+		}
+
+		@Override
+		public City getCurrentCity() {
+			return home;
+		}
+
+		@Override
+		public TaskSet getCurrentTasks() {
+			return null;
+		}
+
+		@Override
+		public long getReward() {
+			return 0;
+		}
+
+		@Override
+		public long getDistanceUnits() {
+			return 0;
+		}
+
+		@Override
+		public double getDistance() {
+			return 0;
+		}
+
+		@Override
+		public Color color() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package template;
+
+//Modified policy iteration on top of the factored backup.
+//Each iteration is one improvement sweep (a full Bellman backup that also picks the greedy policy)
+//followed by evaluationSweeps sweeps that evaluate that fixed policy. An evaluation backup needs no max
+//over the actions, and at high discount most of the propagation of values happens in these cheap sweeps.
+//It stops, like value iteration, once an improvement sweep changes V by less than eps.
+class PolicyIteration extends FactoredValueIteration {
+
+	final int evaluationSweeps;
+
+	//(state, action) pair chosen by the last improvement of each state
+	int[] policyPair;
+
+	public PolicyIteration(TransitionModel model, double discount, double eps, int evaluationSweeps) {
+		super(model, discount, eps);
+		this.evaluationSweeps = evaluationSweeps;
+	}
+
+	@Override
+	void iterate() {
+		policyPair = new int[model.numStates];
+		while (true) {
+			long start = System.nanoTime();
+			long before = backups;
+			double diff = nextSweep();
+			iterations++;
+			if (diff <= eps) {
+				telemetry.sweep(label, iterations, diff, System.nanoTime() - start, backups - before);
+				residual = diff;
+				break;
+			}
+			for (int k = 0; k < evaluationSweeps; k++) {
+				evaluationSweep();
+			}
+			//one record for the improvement and its evaluation sweeps
+			telemetry.sweep(label, iterations, diff, System.nanoTime() - start, backups - before);
+		}
+	}
+
+	//Gauss-Seidel sweep of V <- R(s, pi(s)) + discount * E[V(target, .)]
+	private void evaluationSweep() {
+		beginSweep();
+		for (int s = 0; s < model.numStates; s++) {
+			int sa = policyPair[s];
+			update(s, model.reward[sa] + discount * expected[model.targetOf[sa]]);
+		}
+		backups += model.numStates;
+	}
+
+	@Override
+	double backup(int s) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+			double q = model.reward[sa] + discount * expected[model.targetOf[sa]];
+			if (q > max) {
+				max = q;
+				policy[s] = model.actionOf[sa];
+				policyPair[s] = sa;
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,103 @@
+package template;
+
+//Action of every state of a policy, indexed like the policy arrays of the solvers.
+//The actions go from 0 to numCities, so a compact table stores them in a byte[] when there are at most
+//127 cities and in a short[] up to 32767 cities, a quarter or half of the memory of an int[].
+abstract class PolicyTable {
+
+	abstract int action(int s);
+
+	abstract int size();
+
+	//memory of the actions, without the object headers
+	abstract long bytes();
+
+	static PolicyTable of(int[] policy, int numCities, boolean compact) {
+		if (compact && numCities <= Byte.MAX_VALUE) return new Bytes(policy);
+		if (compact && numCities <= Short.MAX_VALUE) return new Shorts(policy);
+		return new Ints(policy);
+	}
+
+	int[] toArray() {
+		int[] policy = new int[size()];
+		for (int s = 0; s < policy.length; s++) {
+			policy[s] = action(s);
+		}
+		return policy;
+	}
+
+	static class Ints extends PolicyTable {
+		private final int[] actions;
+
+		Ints(int[] policy) {
+			actions = policy;
+		}
+
+		@Override
+		int action(int s) {
+			return actions[s];
+		}
+
+		@Override
+		int size() {
+			return actions.length;
+		}
+
+		@Override
+		long bytes() {
+			return 4L * actions.length;
+		}
+	}
+
+	static class Shorts extends PolicyTable {
+		private final short[] actions;
+
+		Shorts(int[] policy) {
+			actions = new short[policy.length];
+			for (int s = 0; s < policy.length; s++) {
+				actions[s] = (short) policy[s];
+			}
+		}
+
+		@Override
+		int action(int s) {
+			return actions[s];
+		}
+
+		@Override
+		int size() {
+			return actions.length;
+		}
+
+		@Override
+		long bytes() {
+			return 2L * actions.length;
+		}
+	}
+
+	static class Bytes extends PolicyTable {
+		private final byte[] actions;
+
+		Bytes(int[] policy) {
+			actions = new byte[policy.length];
+			for (int s = 0; s < policy.length; s++) {
+				actions[s] = (byte) policy[s];
+			}
+		}
+
+		@Override
+		int action(int s) {
+			return actions[s];
+		}
+
+		@Override
+		int size() {
+			return actions.length;
+		}
+
+		@Override
+		long bytes() {
+			return actions.length;
+		}
+	}
+}
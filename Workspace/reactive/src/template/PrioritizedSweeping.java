@@ -0,0 +1,113 @@
+package template;
+
+//Prioritized sweeping on top of the factored backup.
+//The unit of work is the row of a city x: the n states (x, .), which together determine E[V(x, .)].
+//The row with the largest bound on its Bellman residual is backed up first.
+//When row c is backed up, E[V(c, .)] changes by delta and every Q value of a pair ending in c changes
+//by at most discount * |delta|. Pairs ending in c are the moves of the rows of the neighbors of c,
+//and in every other row x the pickup of state (x, c). The residual bound of row x is therefore
+//	discount * (sum of the deltas of its neighbors + max over c of the deltas of c)
+//accumulated since its last backup. Tracking rows instead of single states keeps the queue updates
+//proportional to the backups, since a single state is fed by hundreds of others in this MDP.
+//It stops once no row has a residual bound above eps, and the greedy policy of the final V is then
+//extracted with one last sweep. An iteration is one backup of a row.
+class PrioritizedSweeping extends FactoredValueIteration {
+
+	//delta of E[V(c, .)] accumulated since the last backup of row x, at x * numCities + c
+	double[] pickupDrift;
+	//max of pickupDrift over the row
+	double[] pickupMax;
+	//neighbors of each city, read from the move actions of the state (c, c)
+	int[][] neighbors;
+	ResidualQueue queue;
+
+	public PrioritizedSweeping(TransitionModel model, double discount, double eps) {
+		super(model, discount, eps);
+	}
+
+	@Override
+	void iterate() {
+		initialize();
+		//one telemetry record per numCities row backups, the work of one sweep
+		long start = System.nanoTime();
+		long before = backups;
+		while (queue.maxPriority() > eps) {
+			backupRow(queue.poll());
+			if (telemetry.enabled && iterations % model.numCities == 0) {
+				telemetry.sweep(label, iterations, queue.maxPriority(), System.nanoTime() - start, backups - before);
+				start = System.nanoTime();
+				before = backups;
+			}
+		}
+
+		residual = queue.maxPriority();
+
+		//greedy policy of the final values
+		beginSweep();
+		for (int s = 0; s < model.numStates; s++) {
+			backup(s);
+		}
+		backups += model.numStates;
+	}
+
+	//Queues every row with its initial residual
+	void initialize() {
+		int n = model.numCities;
+		pickupDrift = new double[model.numStates];
+		pickupMax = new double[n];
+		neighbors = new int[n][];
+		for (int c = 0; c < n; c++) {
+			int s = c * n + c;
+			neighbors[c] = new int[model.stateStart[s + 1] - model.stateStart[s]];
+			for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+				neighbors[c][sa - model.stateStart[s]] = model.targetOf[sa];
+			}
+		}
+
+		queue = new ResidualQueue(n);
+		beginSweep();
+		for (int x = 0; x < n; x++) {
+			double residual = 0;
+			for (int s = x * n; s < (x + 1) * n; s++) {
+				residual = Math.max(residual, Math.abs(backup(s) - V[s]));
+			}
+			if (residual > 0) queue.increase(x, residual);
+		}
+		backups += model.numStates;
+	}
+
+	//Backs up the n states of the row of city c and raises the bounds of the rows that depend on it
+	void backupRow(int c) {
+		int n = model.numCities;
+		double before = expected[c];
+		for (int s = c * n; s < (c + 1) * n; s++) {
+			update(s, backup(s));
+		}
+		backups += n;
+		iterations++;
+
+		//the row is now up to date
+		for (int s = c * n; s < (c + 1) * n; s++) {
+			pickupDrift[s] = 0;
+		}
+		pickupMax[c] = 0;
+		expectationChanged(c, Math.abs(expected[c] - before));
+	}
+
+	//Raises the bounds of the rows with a pair ending in c after E[V(c, .)] changed by delta
+	void expectationChanged(int c, double delta) {
+		if (delta == 0) return;
+		int n = model.numCities;
+		for (int x = 0; x < n; x++) {
+			if (x == c) continue;
+			double d = (pickupDrift[x * n + c] += delta);
+			if (d > pickupMax[x]) {
+				queue.increase(x, discount * (d - pickupMax[x]));
+				pickupMax[x] = d;
+			}
+		}
+		for (int x : neighbors[c]) {
+			queue.increase(x, discount * delta);
+		}
+	}
+}
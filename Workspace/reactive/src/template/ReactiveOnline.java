@@ -0,0 +1,163 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.simulation.Vehicle;
+import logist.agent.Agent;
+import logist.behavior.ReactiveBehavior;
+import logist.plan.Action;
+import logist.plan.Action.Move;
+import logist.plan.Action.Pickup;
+import logist.task.Task;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Reactive agent learning the task distribution online.
+//It counts the tasks (or the absence of a task) it finds in every city, starting from the given
+//TaskDistribution weighted as prior-weight observations, and uses the empirical frequencies as the
+//probabilities of the model. Unlike ReactiveTemplate the no-task probability is part of the model,
+//the state (x, x) being observed like any other.
+//The values are never solved again after setup: an observation only changes E[V(x, .)] of the city it
+//was made in, which raises the residual bounds of the rows depending on it in a PrioritizedSweeping,
+//and each act spends at most update-budget ms backing up the rows with the highest bounds.
+//Vehicles with the same cost per km share a solver, the solvers of all the costs share the probabilities.
+public class ReactiveOnline implements ReactiveBehavior {
+
+	private int numCities;
+	private TransitionModel model;
+	//one solver per distinct cost per km
+	private PrioritizedSweeping[] solvers;
+	//solver of each vehicle, by vehicle id
+	private int[] solverOf;
+	//number of times each task (x, y) was seen in x, (x, x) counting the times no task was found
+	private double[] counts;
+	//number of observations in each city
+	private double[] visits;
+	//the move to each city, actions are immutable
+	private Move[] moves;
+	private long budgetNanos;
+	private Telemetry telemetry;
+	private int numActions;
+	//time spent in act and row backups of all the solvers since the last telemetry record
+	private long updateNanos;
+	private long lastBackups;
+
+	@Override
+	public void setup(Topology topology, TaskDistribution td, Agent agent) {
+
+		// Reads the discount factor from the agents.xml file.
+		// If the property is not present it defaults to 0.95
+		Double discount = agent.readProperty("discount-factor", Double.class,
+						0.95);
+		// Number of observations the given task distribution is worth
+		double priorWeight = agent.readProperty("prior-weight", Double.class, 100.0);
+		// Time spent updating the values in each act
+		double budget = agent.readProperty("update-budget", Double.class, 1.0);
+		budgetNanos = (long) (budget * 1000000);
+
+		// CSV or JSON file receiving a record every 100 acts, none is written if the property is not present
+		telemetry = Telemetry.open(agent.readProperty("telemetry", String.class, ""));
+
+		// Vehicles with the same cost per km share their solver
+		List<Double> distinctCosts = new ArrayList<Double>();
+		solverOf = ReactiveTemplate.groupByCost(agent.vehicles(), distinctCosts);
+
+		numCities = topology.size();
+		model = new TransitionModel(topology, td, distinctCosts.get(0), false);
+		counts = new double[model.numStates];
+		visits = new double[numCities];
+		for (City x : topology) {
+			for (City y : topology) {
+				double p = (x == y) ? td.probability(x, null) : td.probability(x, y);
+				counts[x.id * numCities + y.id] = priorWeight * p;
+				visits[x.id] += priorWeight * p;
+			}
+			for (int s = x.id * numCities; s < (x.id + 1) * numCities; s++) {
+				model.taskProbability[s] = (visits[x.id] > 0) ? counts[s] / visits[x.id] : 0;
+			}
+		}
+
+		//initial values of the prior, later observations only update them incrementally
+		solvers = new PrioritizedSweeping[distinctCosts.size()];
+		for (int c = 0; c < solvers.length; c++) {
+			solvers[c] = new PrioritizedSweeping(model.withCost(distinctCosts.get(c)), discount.doubleValue(), 0.00001);
+			solvers[c].setTelemetry(telemetry, "ONLINE cost " + distinctCosts.get(c));
+			solvers[c].solve();
+			System.out.println("Cost " + distinctCosts.get(c) + ": " + solvers[c].stats());
+			lastBackups += solvers[c].backups;
+		}
+
+		moves = new Move[numCities];
+		for (City c : topology) {
+			moves[c.id] = new Move(c);
+		}
+	}
+
+	@Override
+	public Action act(Vehicle vehicle, Task availableTask) {
+		long start = System.nanoTime();
+		PrioritizedSweeping solver = solvers[solverOf[vehicle.id()]];
+		int x = vehicle.getCurrentCity().id;
+
+		//Figure out current state, (x,x) if no task was found
+		int y = (availableTask != null) ? availableTask.deliveryCity.id : x;
+		observe(x, y);
+
+		//back up the rows with the highest residual bounds until the budget is spent
+		long deadline = start + budgetNanos;
+		while (solver.queue.maxPriority() > solver.eps && System.nanoTime() < deadline) {
+			solver.backupRow(solver.queue.poll());
+		}
+
+		//greedy action of the current values
+		solver.backup(x * numCities + y);
+		int a = solver.policy[x * numCities + y];
+
+		numActions++;
+		if (telemetry.enabled) {
+			updateNanos += System.nanoTime() - start;
+			if (numActions % 100 == 0) record();
+		}
+
+		if (a == numCities) {
+			//Pick and deliver
+			return new Pickup(availableTask);
+		}
+		//Just move to the best neighbor city
+		return moves[a];
+	}
+
+	//One telemetry record for the last 100 acts: their time, the backups of all the solvers and the
+	//highest residual bound left
+	private void record() {
+		long backups = 0;
+		double bound = 0;
+		for (PrioritizedSweeping solver : solvers) {
+			backups += solver.backups;
+			bound = Math.max(bound, solver.queue.maxPriority());
+		}
+		telemetry.sweep("ONLINE", numActions, bound, updateNanos, backups - lastBackups);
+		updateNanos = 0;
+		lastBackups = backups;
+	}
+
+	//Counts the observation of y in x and updates the probabilities of row x and E[V(x, .)] of every solver
+	private void observe(int x, int y) {
+		counts[x * numCities + y]++;
+		visits[x]++;
+		for (int s = x * numCities; s < (x + 1) * numCities; s++) {
+			model.taskProbability[s] = counts[s] / visits[x];
+		}
+		for (PrioritizedSweeping solver : solvers) {
+			double e = 0;
+			for (int s = x * numCities; s < (x + 1) * numCities; s++) {
+				e += model.taskProbability[s] * solver.V[s];
+			}
+			double delta = Math.abs(e - solver.expected[x]);
+			solver.expected[x] = e;
+			solver.expectationChanged(x, delta);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package template;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import logist.simulation.Vehicle;
+import logist.agent.Agent;
+import logist.behavior.ReactiveBehavior;
+import logist.plan.Action;
+import logist.plan.Action.Move;
+import logist.plan.Action.Pickup;
+import logist.task.Task;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Model-free reactive agent learning Q(s, a) with tabular Q-learning.
+//The Q values of the state (x, y) are stored in one flat array, from offset(x, y) on: slot 0 is pick up
+//and deliver (unused when y == x, i.e. no task), slot 1 + i moves to the i-th neighbor of x.
+//Setup is O(number of routes), neither the task distribution nor a transition model is used.
+//In act the vehicle observes the state its last action led to, updates that single Q value and
+//chooses its next action epsilon-greedily, both in O(number of neighbors of the current city).
+public class ReactiveQLearning implements ReactiveBehavior {
+
+	enum Schedule { CONSTANT, HARMONIC, EXPONENTIAL }
+
+	private Random random;
+	private double discount;
+	private int numCities;
+	//neighbors of each city, in the order of their Q values
+	private City[][] neighbors;
+	private Move[][] moves;
+	//offset of the Q values of the state (x, 0), the state (x, y) is y * (neighbors + 1) further
+	private int[] rowStart;
+	private double[] Q;
+
+	private Schedule explorationSchedule;
+	private double exploration;
+	private double explorationDecay;
+	private Schedule learningRateSchedule;
+	private double learningRate;
+	private double learningRateDecay;
+
+	//last Q value updated by each vehicle, -1 before its first action, and the reward it got
+	private int[] lastIndex;
+	private double[] lastReward;
+	private long numActions;
+
+	@Override
+	public void setup(Topology topology, TaskDistribution td, Agent agent) {
+
+		// Reads the discount factor from the agents.xml file.
+		// If the property is not present it defaults to 0.95
+		Double discount = agent.readProperty("discount-factor", Double.class,
+						0.95);
+		this.discount = discount.doubleValue();
+
+		// Probability of a random action, decaying with the number of actions.
+		// Throws IllegalArgumentException if a schedule is unknown
+		exploration = agent.readProperty("exploration", Double.class, 0.1);
+		explorationSchedule = Schedule.valueOf(agent.readProperty("exploration-schedule", String.class, "HARMONIC").toUpperCase());
+		explorationDecay = agent.readProperty("exploration-decay", Double.class, 10000.0);
+		// Step size of the Q updates
+		learningRate = agent.readProperty("learning-rate", Double.class, 0.1);
+		learningRateSchedule = Schedule.valueOf(agent.readProperty("learning-rate-schedule", String.class, "CONSTANT").toUpperCase());
+		learningRateDecay = agent.readProperty("learning-rate-decay", Double.class, 10000.0);
+
+		random = new Random();
+		numCities = topology.size();
+		neighbors = new City[numCities][];
+		moves = new Move[numCities][];
+		rowStart = new int[numCities + 1];
+		for (City x : topology) {
+			neighbors[x.id] = x.neighbors().toArray(new City[0]);
+			moves[x.id] = new Move[neighbors[x.id].length];
+			for (int i = 0; i < neighbors[x.id].length; i++) {
+				moves[x.id][i] = new Move(neighbors[x.id][i]);
+			}
+		}
+		for (int x = 0; x < numCities; x++) {
+			rowStart[x + 1] = rowStart[x] + numCities * (neighbors[x].length + 1);
+		}
+		Q = new double[rowStart[numCities]];
+
+		lastIndex = new int[agent.vehicles().size()];
+		lastReward = new double[agent.vehicles().size()];
+		Arrays.fill(lastIndex, -1);
+	}
+
+	@Override
+	public Action act(Vehicle vehicle, Task availableTask) {
+		City x = vehicle.getCurrentCity();
+
+		//Figure out current state, (x,x) if no task was found
+		int y = (availableTask != null) ? availableTask.deliveryCity.id : x.id;
+		int offset = rowStart[x.id] + y * (neighbors[x.id].length + 1);
+		int first = (y != x.id) ? 0 : 1;
+		int last = neighbors[x.id].length;
+
+		//greedy action of the current state
+		int best = first;
+		for (int a = first + 1; a <= last; a++) {
+			if (Q[offset + a] > Q[offset + best]) best = a;
+		}
+
+		//Q(s, a) <- Q(s, a) + alpha * (r + discount * max Q(s', .) - Q(s, a)) for the last action
+		int v = vehicle.id();
+		if (lastIndex[v] >= 0) {
+			double alpha = value(learningRateSchedule, learningRate, learningRateDecay);
+			Q[lastIndex[v]] += alpha * (lastReward[v] + discount * Q[offset + best] - Q[lastIndex[v]]);
+		}
+
+		int a = best;
+		if (random.nextDouble() < value(explorationSchedule, exploration, explorationDecay)) {
+			a = first + random.nextInt(last - first + 1);
+		}
+		numActions++;
+
+		lastIndex[v] = offset + a;
+		if (a == 0) {
+			//Pick and deliver
+			lastReward[v] = availableTask.reward - x.distanceTo(availableTask.deliveryCity) * vehicle.costPerKm();
+			return new Pickup(availableTask);
+		}
+		//Move to a neighbor city
+		lastReward[v] = -(x.distanceTo(neighbors[x.id][a - 1]) * vehicle.costPerKm());
+		return moves[x.id][a - 1];
+	}
+
+	//Value after numActions actions of a parameter starting at initial
+	private double value(Schedule schedule, double initial, double decay) {
+		switch (schedule) {
+		case CONSTANT:
+			return initial;
+		case HARMONIC:
+			return initial * decay / (decay + numActions);
+		case EXPONENTIAL:
+			return initial * Math.exp(-numActions / decay);
+		default:
+			throw new AssertionError("Should not happen.");
+		}
+	}
+}
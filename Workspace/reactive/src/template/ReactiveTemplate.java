@@ -1,7 +1,12 @@
 package template;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import logist.simulation.Vehicle;
 import logist.agent.Agent;
@@ -16,25 +21,45 @@ import logist.topology.Topology.City;
 
 public class ReactiveTemplate implements ReactiveBehavior {
 
-	double cost;
-	private Agent myAgent;
+	enum Solver { SPARSE, FACTORED, POLICY_ITERATION, PRIORITIZED, AGGREGATED }
+
+	enum Fallback { GREEDY, RANDOM }
+
+	//distinct costs per km of the vehicles, one policy is solved for each
+	double[] costs;
 	private int numCities;
-	private int numActions;
 	private City[] citiesIndex;
-	private HashMap<Key, Double> transitionsTable;
-	private HashMap<KeyReward, Double> transitionsRewardTable;
-	private HashMap<State, Double> V;
-	private HashMap<KeyReward, Double> Q;
-	private HashMap<State, Integer> best;
+	private TransitionModel model;
+	private double[][] values;
+	//best action of the state (x,y) at x.id * numCities + y.id, for each cost
+	private int[][] policies;
+	//in compact mode only the policy tables are kept, the values, int policies and model are released
+	private boolean compact;
+	//policy of each vehicle, by vehicle id, also read by PolicyEvaluator.
+	//During a background solve it holds the GREEDY fallback (null for RANDOM) until the optimal policies
+	//replace it all at once
+	volatile PolicyTable[] vehiclePolicy;
+	//the move to each city, actions are immutable
+	private Move[] moves;
 	private double eps;
+	private Solver solver;
+	private int clusters;
+	private int refinementBudget;
+	private ValueIteration.StoppingRule stoppingRule;
+	private double tolerance;
+	private int stableSweeps;
+	private Telemetry telemetry;
+	private Fallback fallback;
+	private Random random;
+	private double pPickup;
 	
 
 	@Override
-	public void setup(Topology topology, TaskDistribution td, Agent agent) {
+	public void setup(final Topology topology, final TaskDistribution td, final Agent agent) {
 		
+		final long start = System.currentTimeMillis();
 		eps = 0.00001;
 		numCities = topology.size();
-		numActions = 0;
 		citiesIndex = new City[numCities];
 		int index = 0;
 		for (City c : topology) {
@@ -45,246 +70,332 @@ public class ReactiveTemplate implements ReactiveBehavior {
 		
 		// Reads the discount factor from the agents.xml file.
 		// If the property is not present it defaults to 0.95
-		Double discount = agent.readProperty("discount-factor", Double.class,
+		final Double discount = agent.readProperty("discount-factor", Double.class,
 						0.95);
-		this.myAgent = agent;
-		
-		cost = agent.vehicles().get(0).costPerKm();
 		
+		// Vehicles with the same cost per km share their policy
+		List<Double> distinctCosts = new ArrayList<Double>();
+		final int[] costOf = groupByCost(agent.vehicles(), distinctCosts);
+		costs = new double[distinctCosts.size()];
+		for (int c = 0; c < costs.length; c++) {
+			costs[c] = distinctCosts.get(c);
+		}
+		values = new double[costs.length][];
+		policies = new int[costs.length][];
 		
-		//create the tables to work with 
-		createTransitionsRewardsTable(topology, td, cost);
+		// Throws IllegalArgumentException if solver is unknown
+		String solverName = agent.readProperty("solver", String.class, "SPARSE");
+		solver = Solver.valueOf(solverName.toUpperCase());
 		
+		// Number of clusters and of exactly solved cities of the aggregated solver
+		String variant = "";
+		if (solver == Solver.AGGREGATED) {
+			clusters = agent.readProperty("clusters", Integer.class, 20);
+			refinementBudget = agent.readProperty("refinement-budget", Integer.class, 20);
+			variant = solver + " " + clusters + " " + refinementBudget;
+		}
 		
-		//Debug printing 
-		for (Key k : transitionsTable.keySet())
-		{
-			System.out.println("From State: " + k.fromState.x.id + " " + k.fromState.y.id + " with action " + k.action + " to State: "  + k.toState.x.id + " " + k.toState.y.id + " " + " with probability " + transitionsTable.get(k));
+		// MAX_NORM sweeps until V changes by less than eps. SPAN stops once the policy has been stable for
+		// stable-sweeps sweeps and is provably within suboptimality-bound of optimal (sparse and factored solvers)
+		// Throws IllegalArgumentException if the rule is unknown
+		stoppingRule = ValueIteration.StoppingRule.valueOf(agent.readProperty("stopping-rule", String.class, "MAX_NORM").toUpperCase());
+		if (stoppingRule == ValueIteration.StoppingRule.SPAN && (solver == Solver.SPARSE || solver == Solver.FACTORED)) {
+			tolerance = agent.readProperty("suboptimality-bound", Double.class, 1.0);
+			stableSweeps = agent.readProperty("stable-sweeps", Integer.class, 3);
+			variant = solver + " " + stoppingRule + " " + tolerance + " " + stableSweeps;
 		}
 		
-		//Compute optimal policy
-		computeOptimalPolicy(discount.doubleValue());
+		// CSV or JSON file receiving the convergence telemetry, none is written if the property is not present
+		telemetry = Telemetry.open(agent.readProperty("telemetry", String.class, ""));
 		
-	}
-
-	@Override
-	public Action act(Vehicle vehicle, Task availableTask) {
-		Action action;
-		State currentState;
-		City currentCity = vehicle.getCurrentCity();
-
-		
-		//Figure out current state
-		if (availableTask != null) {
-			currentState = new State(currentCity, availableTask.deliveryCity);
-		}
-		else {
-			currentState = new State(currentCity, currentCity);
+		// Directory of the policy cache, the policy is always computed if the property is not present.
+		// The platform throws on a missing property with a null default, hence the empty one
+		String cacheDirectory = agent.readProperty("policy-cache", String.class, "");
+		final PolicyCache cache = !cacheDirectory.isEmpty() ? new PolicyCache(cacheDirectory) : null;
+		final byte[][] keys = new byte[costs.length][];
+		final List<Integer> unsolved = new ArrayList<Integer>();
+		for (int c = 0; c < costs.length; c++) {
+			if (cache != null) {
+				keys[c] = PolicyCache.key(topology, td, costs[c], discount.doubleValue(), eps, variant);
+				if (cache.load(keys[c], numCities * numCities)) {
+					System.out.println("Loaded the policy for cost " + costs[c] + " from " + cacheDirectory);
+					values[c] = cache.V;
+					policies[c] = cache.policy;
+					continue;
+				}
+			}
+			unsolved.add(c);
 		}
 		
-		if (best.get(currentState) == numCities) { 
-			//Pick and deliver
-			action = new Pickup(availableTask);
+		// Solves on a background thread while act serves the fallback policy, so that a long solve does not
+		// run over the platform's setup timeout
+		boolean background = agent.readProperty("background-solve", Boolean.class, false);
+		// GREEDY takes the action with the best immediate reward, RANDOM follows the rule of RandomAgent
+		// Throws IllegalArgumentException if fallback is unknown
+		fallback = Fallback.valueOf(agent.readProperty("fallback", String.class, "GREEDY").toUpperCase());
+		// Keeps only the policies, in byte or short tables, once solved, for many agents in one JVM
+		compact = agent.readProperty("compact-storage", Boolean.class, false);
 		
+		createMoves();
+		if (!background || unsolved.isEmpty()) {
+			solvePolicies(topology, td, discount.doubleValue(), agent, unsolved, cache, keys);
+			vehiclePolicy = optimalTables(discount.doubleValue(), costOf);
+			return;
 		}
-		else { 
-			//Just move to the best neighbor city
-			action = new Move(citiesIndex[best.get(currentState)]);				
+		
+		random = new Random();
+		pPickup = discount;
+		if (fallback == Fallback.GREEDY) {
+			PolicyTable[] greedy = new PolicyTable[costs.length];
+			for (int c = 0; c < costs.length; c++) {
+				greedy[c] = PolicyTable.of(greedyPolicy(td, costs[c]), numCities, compact);
+			}
+			vehiclePolicy = vehicleTables(greedy, costOf);
 		}
-		if (numActions>=1)
-			System.out.println("The total profit after "+numActions+" actions is "+myAgent.getTotalProfit()+" (average profit: "+(myAgent.getTotalProfit() / (double)numActions)+")");
-		numActions++;
-		return action;
+		Thread solverThread = new Thread("reactive solver") {
+			@Override
+			public void run() {
+				try {
+					solvePolicies(topology, td, discount.doubleValue(), agent, unsolved, cache, keys);
+				} catch (RuntimeException | OutOfMemoryError e) {
+					System.out.println("Background solve failed, keeping the " + fallback + " policy: " + e);
+					return;
+				}
+				//switch all the vehicles at once
+				vehiclePolicy = optimalTables(discount.doubleValue(), costOf);
+				System.out.println("Switched from the " + fallback + " policy to the optimal policies "
+						+ (System.currentTimeMillis() - start) + " ms after setup started");
+			}
+		};
+		solverThread.setDaemon(true);
+		solverThread.start();
+		System.out.println("Solving in the background, acting with the " + fallback + " policy meanwhile");
 	}
-	
-	//Method that creates transitions probabilities
-	private void createTransitionsRewardsTable (Topology topology, TaskDistribution td, double cost){
-		
-		transitionsTable = new HashMap<Key, Double>();
-		transitionsRewardTable = new HashMap<KeyReward, Double>();
-		
 
-		for (City fx : topology) {
-			for (City fy : topology) {
-				//Create the current state (current cities, task destination city)
-				State fState = new State(fx, fy);
+	//Computes the policies of the unsolved costs and stores them in the cache
+	private void solvePolicies(Topology topology, TaskDistribution td, double discount, Agent agent,
+			List<Integer> unsolved, PolicyCache cache, byte[][] keys) {
+		if (!unsolved.isEmpty()) {
+			//create the tables to work with, the factored solver does not need the successors
+			//and the aggregated solver builds its own model of the clusters
+			if (solver != Solver.AGGREGATED)
+				model = new TransitionModel(topology, td, costs[unsolved.get(0)], solver == Solver.SPARSE);
 			
-				//No Task found, go anywhere (neighborhood)
-				//Taking action from 0 to numCities-1 depending on the destination city
-				if (fx.id == fy.id) {
-					
-					for (City tx : topology) {
-						for (City ty : topology) {
-							//Create the next state (next cities, dest. task next city)
-							State tState = new State(tx,  ty);
-							//the value is the prob. of finding in the destination city (tx) a task for the city ty
-							//the action is the number of the destination city city
-							if( fState.x.hasNeighbor(tx)) transitionsTable.put(new Key(fState,  tx.id, tState), new Double(td.probability(tx, ty)));
-							
-						}	
-						//Reward table R(s,a)
-						if(fState.x.hasNeighbor(tx)) transitionsRewardTable.put(new  KeyReward(fState, tx.id), new Double(-(cost * fState.x.distanceTo(tx))));
-					}				
-				}
-				//Task found
-				//If a tupla (s,a,s') is not in the hashmap, its transition probability is 0 
-				else {
-					for (City tx : topology) {
-						for (City ty : topology) {
-							State tState = new State(tx,  ty);
-							//Action numCities (value of) means pick up and deliver
-							if (tx.id == fState.y.id) transitionsTable.put(new Key(fState, numCities, tState), new Double(td.probability(tx, ty)));
-							//Action tx.id means not to pick up the task and just move, if the city is a neighbor city 
-							if(fState.x.hasNeighbor(tState.x)) transitionsTable.put(new Key(fState, tx.id, tState), new Double(td.probability(tx, ty)));						
+			//Compute the optimal policies, the costs are solved concurrently
+			if (unsolved.size() == 1) {
+				int c = unsolved.get(0);
+				computeOptimalPolicy(createSolver(topology, td, costs[c], discount, agent), c);
+			} else {
+				List<Callable<Void>> solves = new ArrayList<Callable<Void>>();
+				for (final int c : unsolved) {
+					final ValueIteration vi = createSolver(topology, td, costs[c], discount, agent);
+					solves.add(new Callable<Void>() {
+						@Override
+						public Void call() {
+							computeOptimalPolicy(vi, c);
+							return null;
 						}
-						//Reward if the task was delivered 
-						if (tx.id == fState.y.id) transitionsRewardTable.put(new  KeyReward(fState, numCities), new Double((td.reward(fState.x, fState.y) -(fState.x.distanceTo(fState.y)*cost)) ));
-						//Reward if just moving without picking the task
-						if(fState.x.hasNeighbor(tx)) transitionsRewardTable.put(new  KeyReward(fState, tx.id), new Double(-(fState.x.distanceTo(tx)*cost)));
-					}			
+					});
 				}
-				
-			}			
-		}		
-	}	
-	private void computeOptimalPolicy(double discount){
-		
-		V = new HashMap<State, Double>();
-		HashMap<State, Double> Vp = new HashMap<State, Double>();
-		Q = new HashMap<KeyReward, Double>();
-		best = new HashMap<State, Integer>();
-		
-		//initialize V and Q tables
-		for (KeyReward k : transitionsRewardTable.keySet()) {
-			V.put(k.fromState, new Double(1));
-			Vp.put(k.fromState, new Double(1));
-			Q.put(k, new Double(0));
-		}
-		
-		//Compute optimal value and policy
-		double diff = 100;
-		int h=0;
-		double tmp = 0;
-		//Value Iteration algorithm
-		while (diff > eps){
-			for (State si : V.keySet()) {
-				Vp.replace(si, new Double(V.get(si)));
-			}
-			for (State s : V.keySet()) {
-				
-				for (int i=0; i<=numCities; i++) {
-					KeyReward kw = new KeyReward(s,i);
-					if (transitionsRewardTable.get(kw) != null) {
-						tmp = transitionsRewardTable.get(kw).doubleValue();
-					}
-				
-					for (Key k : transitionsTable.keySet()) {															
-						if (k.fromState.equals(s) && k.action == i) {						
-							if(Q.get(kw) != null) {
-								tmp = tmp + ( discount * transitionsTable.get(k) * V.get(k.toState));
-							}							
-						}
+				ForkJoinPool pool = new ForkJoinPool(Math.min(solves.size(), Runtime.getRuntime().availableProcessors()));
+				try {
+					for (Future<Void> f : pool.invokeAll(solves)) {
+						f.get();
 					}
-					Q.replace(kw, new Double(tmp));
+				} catch (InterruptedException | ExecutionException e) {
+					throw new RuntimeException("Could not compute the reactive policies", e);
+				} finally {
+					pool.shutdown();
 				}
-				double max = -100000;
-				for (KeyReward kr : Q.keySet()) {					
-					if (kr.fromState.equals(s) && Q.get(kr) > max) {
-						max = Q.get(kr);
-						best.put(s, new Integer(kr.action));
-						V.replace(s, new Double (max));
-					}
-					
+			}
+			
+			if (cache != null) {
+				for (int c : unsolved) {
+					cache.store(keys[c], values[c], policies[c]);
 				}
-			}	
-			h++;
-			diff = 0;
-			for (State ss : V.keySet()) {
-				if(Math.abs(V.get(ss) - Vp.get(ss)) > diff) diff =  Math.abs(V.get(ss) - Vp.get(ss)) ;					
-			}	
-			System.out.println(diff);
+			}
 		}
-		System.out.println(h);
+		
+		telemetry.close();
 	}
 	
-	//Custom classes
-	private class Key {
-		//from 0 to n^2 -1 
-		public State fromState;
-		public State toState;
-		//from 0 to n, where action n is pick the task and go to the to city
-		public int action;
+	@Override
+	public Action act(Vehicle vehicle, Task availableTask) {
+		int x = vehicle.getCurrentCity().id;
 		
-		public Key(State f, int a, State t) {
-			fromState = f;
-			action = a;
-			toState = t;
-		}
-		@Override
-		public boolean equals (Object o) {
-			if (this == o) return true;
-			if (this == null || getClass() != o.getClass()) return false;
-			Key k = (Key) o;
-			boolean first = (k.fromState.x.id == this.fromState.x.id && k.fromState.y.id == this.fromState.y.id);
-			boolean second = (k.toState.x.id == this.toState.x.id && k.toState.y.id == this.toState.y.id);
-			boolean a = (k.action == this.action);
-			return (first && second && a);
+		//read once, a background solve may replace the tables at any time
+		PolicyTable[] tables = vehiclePolicy;
+		if (tables == null) {
+			//RANDOM fallback
+			if (availableTask == null || random.nextDouble() > pPickup) {
+				return new Move(vehicle.getCurrentCity().randomNeighbor(random));
+			}
+			return new Pickup(availableTask);
 		}
 		
-		@Override
-		public int hashCode() {
-			return (fromState.x.id * numCities + fromState.y.id + toState.x.id * numCities + toState.y.id + action);
+		//Figure out current state, (x,x) if no task was found
+		int y = (availableTask != null) ? availableTask.deliveryCity.id : x;
+		int a = tables[vehicle.id()].action(x * numCities + y);
+		
+		if (a == numCities) { 
+			//Pick and deliver
+			return new Pickup(availableTask);
 		}
+		//Just move to the best neighbor city
+		return moves[a];
 	}
 	
-	
-	private class KeyReward {
-		//from 0 to n^2 -1 
-		public State fromState;
-		//from 0 to n, where action n is pick the task and go to the to city
-		public int action;
+	private ValueIteration createSolver(Topology topology, TaskDistribution td, double cost, double discount, Agent agent) {
 		
-		public KeyReward(State f, int a) {
-			fromState = f;
-			action = a;
+		TransitionModel model = (this.model != null) ? this.model.withCost(cost) : null;
+		ValueIteration vi;
+		switch (solver) {
+		case SPARSE:
+			vi = new ValueIteration(model, discount, eps);
+			break;
+		case FACTORED:
+			vi = new FactoredValueIteration(model, discount, eps);
+			break;
+		case POLICY_ITERATION:
+			// Number of sweeps evaluating the policy between two improvements
+			int evaluationSweeps = agent.readProperty("evaluation-sweeps", Integer.class, 20);
+			vi = new PolicyIteration(model, discount, eps, evaluationSweeps);
+			break;
+		case PRIORITIZED:
+			vi = new PrioritizedSweeping(model, discount, eps);
+			break;
+		case AGGREGATED:
+			vi = new StateAggregation(topology, td, cost, discount, eps, clusters, refinementBudget);
+			break;
+		default:
+			throw new AssertionError("Should not happen.");
 		}
+		// Number of threads sweeping the states, 1 keeps the sequential Gauss-Seidel sweeps
+		vi.setThreads(agent.readProperty("threads", Integer.class, 1));
+		if (solver == Solver.SPARSE || solver == Solver.FACTORED)
+			vi.setStoppingRule(stoppingRule, tolerance, stableSweeps);
+		vi.setTelemetry(telemetry, solver + " cost " + cost);
+		return vi;
+	}
+	
+	private void computeOptimalPolicy(ValueIteration solver, int c){
 		
-		@Override
-		public boolean equals (Object o) {
-			if (this == o) return true;
-			if (this == null || getClass() != o.getClass()) return false;
-			KeyReward k = (KeyReward) o;
-			boolean first = (k.fromState.x.id == this.fromState.x.id && k.fromState.y.id == this.fromState.y.id);
-			boolean a = (k.action == this.action);
-			return (first  && a);
+		solver.solve();
+		System.out.println("Cost " + costs[c] + ": " + solver.stats());
+		telemetry.model(solver.label, solver.model.numStates, solver.model.nonZeroTransitions(), solver.elapsedMillis);
+		values[c] = solver.V;
+		policies[c] = solver.policy;
+	}
+	
+	//Index in distinctCosts of the cost per km of each vehicle, by vehicle id. The distinct costs are
+	//appended to distinctCosts in the order the vehicles are listed
+	static int[] groupByCost(List<Vehicle> vehicles, List<Double> distinctCosts) {
+		int[] costOf = new int[vehicles.size()];
+		for (Vehicle v : vehicles) {
+			int c = distinctCosts.indexOf(Double.valueOf(v.costPerKm()));
+			if (c < 0) {
+				c = distinctCosts.size();
+				distinctCosts.add(Double.valueOf(v.costPerKm()));
+			}
+			costOf[v.id()] = c;
 		}
-		
-		@Override
-		public int hashCode() {
-			return (fromState.x.id * numCities + fromState.y.id + action);
+		return costOf;
+	}
+	
+	//Policy of each vehicle, from the policy of each cost
+	private static PolicyTable[] vehicleTables(PolicyTable[] costPolicies, int[] costOf) {
+		PolicyTable[] tables = new PolicyTable[costOf.length];
+		for (int v = 0; v < costOf.length; v++) {
+			tables[v] = costPolicies[costOf[v]];
 		}
+		return tables;
 	}
-	private class State{
-		//a state is a couple (x,y) with x != y where x is the current city, y is the
-		//destination city of the task found in x if found.
-		//The state (x,y) with x == y indicate the State "being in x and not found task"
-		public City x;
-		public City y;
-		public State(City a, City b) {
-			x = a;
-			y = b;
+	
+	//Policy of each vehicle from the solved policies. In compact mode the solver's data is released and
+	//the memory saved is reported next to how much rounding the values to float would change the greedy actions
+	private PolicyTable[] optimalTables(double discount, int[] costOf) {
+		PolicyTable[] tables = new PolicyTable[costs.length];
+		for (int c = 0; c < costs.length; c++) {
+			tables[c] = PolicyTable.of(policies[c], numCities, compact);
 		}
-		
-		@Override
-		public boolean equals (Object o) {
-			if (this == o) return true;
-			if (this == null || getClass() != o.getClass()) return false;
-			State k = (State) o;
-			return (k.x.id == this.x.id && k.y.id == this.y.id);
+		if (compact) {
+			long before = (model != null) ? model.bytes() : 0;
+			long after = 0;
+			for (int c = 0; c < costs.length; c++) {
+				before += 8L * values[c].length + 4L * policies[c].length;
+				after += tables[c].bytes();
+				
+				String drift = "not measured without the model";
+				if (model != null) {
+					double[] d = roundingDrift(model.withCost(costs[c]), discount, values[c], policies[c]);
+					drift = String.format("%d of %d greedy actions would change, losing at most %.3g in one step", (long) d[0], values[c].length, d[1]);
+				}
+				System.out.println("Cost " + costs[c] + ": with float values " + drift);
+			}
+			System.out.printf("Compact storage: %.1f KB instead of %.1f KB%n", after / 1024.0, before / 1024.0);
+			values = null;
+			policies = null;
+			model = null;
+		}
+		return vehicleTables(tables, costOf);
+	}
+	
+	//Number of states whose greedy action for the values rounded to float differs from policy, and the largest
+	//loss Q(s, policy(s)) - Q(s, a) of such an action a, measured with the exact values
+	private static double[] roundingDrift(TransitionModel model, double discount, double[] V, int[] policy) {
+		int n = model.numCities;
+		double[] expected = new double[n];
+		double[] roundedExpected = new double[n];
+		for (int s = 0; s < model.numStates; s++) {
+			expected[s / n] += model.taskProbability[s] * V[s];
+			roundedExpected[s / n] += model.taskProbability[s] * (float) V[s];
+		}
+		long changed = 0;
+		double loss = 0;
+		for (int s = 0; s < model.numStates; s++) {
+			double best = Double.NEGATIVE_INFINITY;
+			double chosen = 0;
+			double q = 0;
+			for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+				double r = model.reward[sa] + discount * roundedExpected[model.targetOf[sa]];
+				if (r > best) {
+					best = r;
+					q = model.reward[sa] + discount * expected[model.targetOf[sa]];
+				}
+				if (model.actionOf[sa] == policy[s]) chosen = model.reward[sa] + discount * expected[model.targetOf[sa]];
+			}
+			if (chosen != q) {
+				changed++;
+				loss = Math.max(loss, chosen - q);
+			}
 		}
-		@Override
-		public int hashCode() {
-			return (x.id * numCities + y.id );
+		return new double[] { changed, loss };
+	}
+	
+	//One-step greedy policy: pick up the task if that pays at least as much as the cheapest move,
+	//otherwise move to the nearest neighbor
+	private int[] greedyPolicy(TaskDistribution td, double cost) {
+		int[] greedy = new int[numCities * numCities];
+		for (City x : citiesIndex) {
+			City nearest = null;
+			for (City n : x) {
+				if (nearest == null || x.distanceTo(n) < x.distanceTo(nearest)) nearest = n;
+			}
+			for (City y : citiesIndex) {
+				double pickup = td.reward(x, y) - x.distanceTo(y) * cost;
+				boolean pick = (y.id != x.id) && pickup >= -x.distanceTo(nearest) * cost;
+				greedy[x.id * numCities + y.id] = pick ? numCities : nearest.id;
+			}
+		}
+		return greedy;
+	}
+	
+	//act reads the policy table directly, only the moves are created in advance
+	private void createMoves(){
+		
+		moves = new Move[numCities];
+		for (City c : citiesIndex) {
+			moves[c.id] = new Move(c);
 		}
 	}
 }
@@ -0,0 +1,85 @@
+package template;
+
+import java.util.Arrays;
+
+//Indexed binary max-heap of states keyed by their (bound on the) Bellman residual.
+//Priorities only grow while a state is queued, so an update is a sift up.
+class ResidualQueue {
+
+	private final int[] heap;
+	//position of each state in heap, -1 if it is not queued
+	private final int[] position;
+	private final double[] priority;
+	private int size;
+
+	public ResidualQueue(int numStates) {
+		heap = new int[numStates];
+		position = new int[numStates];
+		priority = new double[numStates];
+		Arrays.fill(position, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public double maxPriority() {
+		return (size == 0) ? 0 : priority[heap[0]];
+	}
+
+	public double priority(int s) {
+		return priority[s];
+	}
+
+	//Adds delta to the priority of s, queueing it if needed
+	public void increase(int s, double delta) {
+		priority[s] += delta;
+		if (position[s] < 0) {
+			position[s] = size;
+			heap[size++] = s;
+		}
+		siftUp(position[s]);
+	}
+
+	//Removes the state with the highest priority and resets its priority to 0
+	public int poll() {
+		int top = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		position[top] = -1;
+		priority[top] = 0;
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int s = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (priority[heap[parent]] >= priority[s]) break;
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = s;
+		position[s] = i;
+	}
+
+	private void siftDown(int i) {
+		int s = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) break;
+			if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]]) child++;
+			if (priority[heap[child]] <= priority[s]) break;
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = s;
+		position[s] = i;
+	}
+}
@@ -0,0 +1,381 @@
+package template;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Approximate value iteration for topologies too large for the exact solvers.
+//The cities are grouped by k-means on their coordinates and the reactive MDP of the clusters is solved
+//with the factored value iteration: a cluster is a city placed at its most central member, two clusters
+//are linked if a route links two of their members, and the task probabilities and rewards between
+//clusters are the averages over their members. A task within a cluster is picked up in place, for the
+//average reward and km of those tasks. The model of the clusters is only O(k^2).
+//E[V(c, .)] of a city c is then approximated by that of its cluster, and the policy of every concrete
+//state is lifted back by a one-step lookahead over its concrete actions.
+//The refinement pass estimates how often the lifted policy visits each city and solves the rows of the
+//refinementBudget most visited cities exactly, the other cities keeping the approximation of their cluster
+//corrected for its bias.
+class StateAggregation extends FactoredValueIteration {
+
+	private final TaskDistribution td;
+	private final double cost;
+	private final int refinementBudget;
+	//cluster of each city
+	private final int[] clusterOf;
+	private final City[] cities;
+
+	//approximate E[V(c, .)] of every concrete city
+	double[] cityExpected;
+	int refinementSweeps;
+
+	public StateAggregation(Topology topology, TaskDistribution td, double cost, double discount, double eps, int clusters, int refinementBudget) {
+		this(topology, td, cost, discount, eps, cluster(topology, clusters), refinementBudget);
+	}
+
+	private StateAggregation(Topology topology, TaskDistribution td, double cost, double discount, double eps, int[] clusterOf, int refinementBudget) {
+		super(reducedModel(topology, td, cost, clusterOf), discount, eps);
+		this.td = td;
+		this.cost = cost;
+		this.refinementBudget = refinementBudget;
+		this.clusterOf = clusterOf;
+		cities = topology.cities().toArray(new City[0]);
+	}
+
+	//Solves the model of the clusters, then stores the lifted values and policy of the concrete states in V and policy
+	@Override
+	public void solve(double[] initialValues) {
+		if (initialValues != null)
+			throw new IllegalArgumentException("The aggregated solver cannot be warm-started");
+		long start = System.currentTimeMillis();
+		super.solve(null);
+
+		int n = cities.length;
+		cityExpected = new double[n];
+		for (int c = 0; c < n; c++) {
+			cityExpected[c] = expected[clusterOf[c]];
+		}
+		double[] values = new double[n * n];
+		int[] actions = new int[n * n];
+		lift(values, actions);
+
+		if (refinementBudget > 0) {
+			refine(visitFrequencies(actions));
+			lift(values, actions);
+		}
+		V = values;
+		policy = actions;
+		elapsedMillis = System.currentTimeMillis() - start;
+	}
+
+	@Override
+	public String stats() {
+		return String.format("%s: %d clusters, %d iterations, %d backups, residual %.3g, %d refined cities in %d sweeps, %d ms",
+				getClass().getSimpleName(), model.numCities, iterations, backups, residual,
+				Math.min(refinementBudget, cities.length), refinementSweeps, elapsedMillis);
+	}
+
+	//Greedy values and actions of every concrete state with respect to cityExpected
+	private void lift(double[] values, int[] actions) {
+		int n = cities.length;
+		for (City x : cities) {
+			for (City y : cities) {
+				int s = x.id * n + y.id;
+				values[s] = lookahead(x, y, actions);
+			}
+		}
+		backups += (long) n * n;
+	}
+
+	//max over the concrete actions of (x, y) of R(s, a) + discount * cityExpected[target],
+	//stores the best action in actions unless it is null
+	private double lookahead(City x, City y, int[] actions) {
+		int n = cities.length;
+		double max = Double.NEGATIVE_INFINITY;
+		int best = -1;
+		if (x != y) {
+			max = td.reward(x, y) - x.distanceTo(y) * cost + discount * cityExpected[y.id];
+			best = n;
+		}
+		for (City t : x) {
+			double q = -(x.distanceTo(t) * cost) + discount * cityExpected[t.id];
+			if (q > max) {
+				max = q;
+				best = t.id;
+			}
+		}
+		if (actions != null) actions[x.id * n + y.id] = best;
+		return max;
+	}
+
+	//Stationary distribution of the city the vehicle is in under the lifted policy, by power iteration
+	private double[] visitFrequencies(int[] actions) {
+		int n = cities.length;
+		double[] frequency = new double[n];
+		double[] next = new double[n];
+		Arrays.fill(frequency, 1.0 / n);
+		for (int k = 0; k < 100; k++) {
+			Arrays.fill(next, 0);
+			for (City x : cities) {
+				if (frequency[x.id] == 0) continue;
+				for (City y : cities) {
+					double p = (x == y) ? td.probability(x, null) : td.probability(x, y);
+					int a = actions[x.id * n + y.id];
+					next[(a == n) ? y.id : a] += frequency[x.id] * p;
+				}
+			}
+			double total = 0;
+			for (int c = 0; c < n; c++) {
+				total += next[c];
+			}
+			double diff = 0;
+			for (int c = 0; c < n; c++) {
+				diff = Math.max(diff, Math.abs(next[c] / total - frequency[c]));
+				frequency[c] = next[c] / total;
+			}
+			if (diff < 1e-9) break;
+		}
+		return frequency;
+	}
+
+	//Gauss-Seidel sweeps over the rows of the most visited cities until their E[V(c, .)] is stable.
+	//The error of the clusters is mostly a common bias, and correcting a few cities only would make them
+	//look better or worse than the others. After each sweep the other cities are therefore shifted by the
+	//mean correction of the refined cities of their cluster, or of all the refined cities if there is none.
+	private void refine(final double[] frequency) {
+		int n = cities.length;
+		int k = model.numCities;
+		Integer[] order = new Integer[n];
+		for (int c = 0; c < n; c++) {
+			order[c] = c;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(frequency[b], frequency[a]);
+			}
+		});
+		int m = Math.min(refinementBudget, n);
+		boolean[] refined = new boolean[n];
+		for (int i = 0; i < m; i++) {
+			refined[order[i]] = true;
+		}
+		double[] aggregated = cityExpected.clone();
+		double[] correction = new double[k];
+		int[] count = new int[k];
+
+		double diff = Double.POSITIVE_INFINITY;
+		refinementSweeps = 0;
+		while (diff > eps) {
+			diff = 0;
+			for (int i = 0; i < m; i++) {
+				City x = cities[order[i]];
+				double e = 0;
+				for (City y : cities) {
+					double p = td.probability(x, y);
+					if (p != 0) e += p * lookahead(x, y, null);
+				}
+				diff = Math.max(diff, Math.abs(e - cityExpected[x.id]));
+				cityExpected[x.id] = e;
+			}
+			backups += (long) m * n;
+			refinementSweeps++;
+
+			Arrays.fill(correction, 0);
+			Arrays.fill(count, 0);
+			double total = 0;
+			for (int i = 0; i < m; i++) {
+				int c = order[i];
+				correction[clusterOf[c]] += cityExpected[c] - aggregated[c];
+				count[clusterOf[c]]++;
+				total += cityExpected[c] - aggregated[c];
+			}
+			for (int c = 0; c < n; c++) {
+				if (refined[c]) continue;
+				double e = aggregated[c] + ((count[clusterOf[c]] > 0) ? correction[clusterOf[c]] / count[clusterOf[c]] : total / m);
+				diff = Math.max(diff, Math.abs(e - cityExpected[c]));
+				cityExpected[c] = e;
+			}
+		}
+	}
+
+	//Cluster of every city, by k-means on the coordinates of the cities
+	static int[] cluster(Topology topology, int clusters) {
+		City[] cities = topology.cities().toArray(new City[0]);
+		int n = cities.length;
+		int k = Math.min(clusters, n);
+		double[] cx = new double[k];
+		double[] cy = new double[k];
+
+		//k-means++ seeding, with a fixed seed so that the same topology always gives the same clusters
+		Random random = new Random(0);
+		double[] distance = new double[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		City first = cities[random.nextInt(n)];
+		cx[0] = first.xPos;
+		cy[0] = first.yPos;
+		for (int j = 1; j < k; j++) {
+			double total = 0;
+			for (int c = 0; c < n; c++) {
+				distance[c] = Math.min(distance[c], squaredDistance(cities[c], cx[j - 1], cy[j - 1]));
+				total += distance[c];
+			}
+			double u = random.nextDouble() * total;
+			int chosen = n - 1;
+			for (int c = 0; c < n; c++) {
+				u -= distance[c];
+				if (u < 0) {
+					chosen = c;
+					break;
+				}
+			}
+			cx[j] = cities[chosen].xPos;
+			cy[j] = cities[chosen].yPos;
+		}
+
+		int[] clusterOf = new int[n];
+		int[] size = new int[k];
+		boolean changed = true;
+		for (int iteration = 0; changed && iteration < 100; iteration++) {
+			changed = false;
+			for (int c = 0; c < n; c++) {
+				int best = 0;
+				for (int j = 1; j < k; j++) {
+					if (squaredDistance(cities[c], cx[j], cy[j]) < squaredDistance(cities[c], cx[best], cy[best])) best = j;
+				}
+				if (iteration == 0 || best != clusterOf[c]) changed = true;
+				clusterOf[c] = best;
+			}
+			Arrays.fill(cx, 0);
+			Arrays.fill(cy, 0);
+			Arrays.fill(size, 0);
+			for (int c = 0; c < n; c++) {
+				cx[clusterOf[c]] += cities[c].xPos;
+				cy[clusterOf[c]] += cities[c].yPos;
+				size[clusterOf[c]]++;
+			}
+			for (int j = 0; j < k; j++) {
+				if (size[j] == 0) continue;
+				cx[j] /= size[j];
+				cy[j] /= size[j];
+			}
+		}
+
+		//renumber the clusters so that none is empty
+		int[] index = new int[k];
+		int numClusters = 0;
+		for (int j = 0; j < k; j++) {
+			index[j] = (size[j] > 0) ? numClusters++ : -1;
+		}
+		for (int c = 0; c < n; c++) {
+			clusterOf[c] = index[clusterOf[c]];
+		}
+		return clusterOf;
+	}
+
+	private static double squaredDistance(City c, double x, double y) {
+		return (c.xPos - x) * (c.xPos - x) + (c.yPos - y) * (c.yPos - y);
+	}
+
+	//Transition model of the clusters
+	private static TransitionModel reducedModel(Topology topology, TaskDistribution td, double cost, int[] clusterOf) {
+		City[] cities = topology.cities().toArray(new City[0]);
+		int n = cities.length;
+		int k = 0;
+		for (int c = 0; c < n; c++) {
+			k = Math.max(k, clusterOf[c] + 1);
+		}
+
+		//the most central member of each cluster stands for it
+		int[] size = new int[k];
+		double[] cx = new double[k];
+		double[] cy = new double[k];
+		for (City c : cities) {
+			size[clusterOf[c.id]]++;
+			cx[clusterOf[c.id]] += c.xPos;
+			cy[clusterOf[c.id]] += c.yPos;
+		}
+		City[] center = new City[k];
+		for (City c : cities) {
+			int j = clusterOf[c.id];
+			if (center[j] == null || squaredDistance(c, cx[j] / size[j], cy[j] / size[j]) < squaredDistance(center[j], cx[j] / size[j], cy[j] / size[j]))
+				center[j] = c;
+		}
+
+		Topology.Builder builder = new Topology.Builder();
+		for (int j = 0; j < k; j++) {
+			builder.addCity("Cluster " + j, center[j].xPos, center[j].yPos);
+		}
+		boolean[] linked = new boolean[k * k];
+		for (City x : cities) {
+			for (City y : x) {
+				int i = clusterOf[x.id];
+				int j = clusterOf[y.id];
+				if (i == j || linked[i * k + j]) continue;
+				linked[i * k + j] = true;
+				linked[j * k + i] = true;
+				builder.addRoute("Cluster " + i, "Cluster " + j, center[i].distanceUnitsTo(center[j]));
+			}
+		}
+		Topology reduced = builder.build();
+
+		//average task probabilities, and rewards weighted by the probabilities, of the members.
+		//A task between two members of cluster i is the state (i, i) of the reduced model, picked up for
+		//the average reward and km of those tasks and leaving the vehicle in i
+		double[] probability = new double[k * k];
+		double[] reward = new double[k * k];
+		double[] noTask = new double[k];
+		double[] localDistance = new double[k];
+		for (City x : cities) {
+			int i = clusterOf[x.id];
+			noTask[i] += td.probability(x, null) / size[i];
+			for (City y : cities) {
+				if (x == y) continue;
+				double p = td.probability(x, y);
+				probability[i * k + clusterOf[y.id]] += p / size[i];
+				reward[i * k + clusterOf[y.id]] += p * td.reward(x, y) / size[i];
+				if (clusterOf[y.id] == i) localDistance[i] += p * x.distanceTo(y) / size[i];
+			}
+		}
+		for (int ij = 0; ij < k * k; ij++) {
+			if (probability[ij] > 0) reward[ij] /= probability[ij];
+		}
+		for (int i = 0; i < k; i++) {
+			if (probability[i * k + i] > 0) localDistance[i] /= probability[i * k + i];
+		}
+		return new TransitionModel(reduced, new AggregatedDistribution(k, probability, reward, noTask), cost, false, localDistance);
+	}
+
+	//Task distribution between the clusters of the reduced topology
+	private static class AggregatedDistribution implements TaskDistribution {
+		private final int numClusters;
+		private final double[] probability;
+		private final double[] reward;
+		private final double[] noTask;
+
+		AggregatedDistribution(int numClusters, double[] probability, double[] reward, double[] noTask) {
+			this.numClusters = numClusters;
+			this.probability = probability;
+			this.reward = reward;
+			this.noTask = noTask;
+		}
+
+		@Override
+		public double probability(City from, City to) {
+			return (to == null) ? noTask[from.id] : probability[from.id * numClusters + to.id];
+		}
+
+		@Override
+		public int reward(City from, City to) {
+			return (int) Math.round(reward[from.id * numClusters + to.id]);
+		}
+
+		@Override
+		public int weight(City from, City to) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package template;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+//Telemetry of the policy computation, written to a CSV file, or to a JSON file (one object per line) if
+//its name ends with .json.
+//Two kinds of records are written:
+//- sweep: residual, wall time and backups of every sweep of a solver
+//- model: number of states and non-zero transitions of a solved model, peak heap and total time
+//The solvers only format a line and queue it, a background thread does the writing.
+//DISABLED records nothing and is the default everywhere.
+class Telemetry {
+
+	static final Telemetry DISABLED = new Telemetry();
+
+	private static final String[] COLUMNS = { "event", "label", "iteration", "residual", "sweep_ms", "backups",
+			"backups_per_s", "states", "transitions", "peak_heap_mb", "total_ms" };
+	//marks the end of the queue
+	private static final String END = new String("end");
+
+	final boolean enabled;
+	private final boolean json;
+	private final BlockingQueue<String> lines;
+	private final Thread writer;
+
+	private Telemetry() {
+		enabled = false;
+		json = false;
+		lines = null;
+		writer = null;
+	}
+
+	private Telemetry(String file) throws IOException {
+		enabled = true;
+		json = file.endsWith(".json");
+		lines = new LinkedBlockingQueue<String>();
+		final BufferedWriter out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+		if (!json) {
+			out.write(String.join(",", COLUMNS));
+			out.newLine();
+		}
+		writer = new Thread("telemetry writer") {
+			@Override
+			public void run() {
+				try {
+					for (String line = lines.take(); line != END; line = lines.take()) {
+						out.write(line);
+						out.newLine();
+						if (lines.isEmpty()) out.flush();
+					}
+				} catch (InterruptedException | IOException e) {
+					System.out.println("Telemetry stopped: " + e);
+				} finally {
+					try {
+						out.close();
+					} catch (IOException e) {
+						//nothing left to do
+					}
+				}
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	//Telemetry writing to file, DISABLED if file is null or empty or cannot be created
+	public static Telemetry open(String file) {
+		if (file == null || file.isEmpty()) return DISABLED;
+		try {
+			return new Telemetry(file);
+		} catch (IOException e) {
+			System.out.println("Could not open telemetry file " + file + ": " + e);
+			return DISABLED;
+		}
+	}
+
+	public void sweep(String label, int iteration, double residual, long nanos, long backups) {
+		if (!enabled) return;
+		record("sweep", label, iteration, residual, nanos / 1e6, backups, backups / (nanos / 1e9), null, null, null, null);
+	}
+
+	public void model(String label, int states, long transitions, long totalMillis) {
+		if (!enabled) return;
+		record("model", label, null, null, null, null, null, states, transitions, peakHeapBytes() / (1024.0 * 1024.0), totalMillis);
+	}
+
+	//Waits for the queued records to be written and closes the file
+	public void close() {
+		if (!enabled) return;
+		lines.add(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void record(Object... values) {
+		StringBuilder line = new StringBuilder();
+		if (json) line.append('{');
+		boolean first = true;
+		for (int i = 0; i < COLUMNS.length; i++) {
+			Object value = values[i];
+			//NaN and infinities are not valid JSON, they are left out like missing values
+			if (value instanceof Double && !Double.isFinite((Double) value)) value = null;
+			if (json && value == null) continue;
+			if (!first) line.append(',');
+			first = false;
+			if (json) line.append('"').append(COLUMNS[i]).append("\":");
+			if (value instanceof String) {
+				String text = ((String) value).replace("\"", "'");
+				line.append(json ? "\"" + text + "\"" : text.replace(",", ";"));
+			} else if (value instanceof Double) {
+				line.append(String.format(Locale.ROOT, "%.6g", (Double) value));
+			} else if (value != null) {
+				line.append(value);
+			}
+		}
+		if (json) line.append('}');
+		lines.add(line.toString());
+	}
+
+	//Sum of the peak usages of the heap memory pools
+	private static long peakHeapBytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,186 @@
+package template;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+//Transition model of the reactive MDP in compressed sparse row (CSR) form.
+//A state (x,y) is stored as x.id * numCities + y.id, (x,x) being the state "in x and no task found".
+//In a model built with local distances (the model of the clusters of StateAggregation), (x,x) is instead
+//the state "in x with a task staying in x", which can be picked up like any other.
+//Actions go from 0 to numCities-1 (move to the neighbor city with that id) and numCities (pick up and deliver).
+//Two levels of row pointers index the model:
+//- the (state, action) pairs available in s are [stateStart[s], stateStart[s+1])
+//- the successors of the pair sa are [successorStart[sa], successorStart[sa+1]) in toState and probability
+//Successors with probability 0 are not stored. They are only built on request, since the next state
+//of a pair is fully described by its target city and taskProbability.
+class TransitionModel {
+
+	final int numCities;
+	final int numStates;
+	final int numActions;
+	//cost per km the rewards were computed with
+	final double cost;
+
+	//td.probability(tx, ty) at tx * numCities + ty
+	final double[] taskProbability;
+	//number of ty with td.probability(tx, ty) != 0
+	final int[] successorCount;
+
+	final int[] stateStart;
+	final int[] actionOf;
+	//city the vehicle ends up in after the pair sa
+	final int[] targetOf;
+	//R(s,a) of the pair sa
+	final double[] reward;
+	//km driven by the pair sa
+	final double[] distanceOf;
+
+	//null unless built with successors
+	final int[] successorStart;
+	final int[] toState;
+	final double[] probability;
+
+	public TransitionModel(Topology topology, TaskDistribution td, double cost) {
+		this(topology, td, cost, true);
+	}
+
+	public TransitionModel(Topology topology, TaskDistribution td, double cost, boolean withSuccessors) {
+		this(topology, td, cost, withSuccessors, null);
+	}
+
+	//With localDistance, a state (x,x) of non-zero probability also has the pair picking up its task, for
+	//td.reward(x, x) and localDistance[x] km, after which the vehicle is still in x
+	TransitionModel(Topology topology, TaskDistribution td, double cost, boolean withSuccessors, double[] localDistance) {
+		numCities = topology.size();
+		numStates = numCities * numCities;
+		numActions = numCities + 1;
+		this.cost = cost;
+
+		City[] cities = new City[numCities];
+		for (City c : topology) {
+			cities[c.id] = c;
+		}
+
+		//the distribution of the next state only depends on the city we end up in
+		taskProbability = new double[numStates];
+		successorCount = new int[numCities];
+		for (City tx : cities) {
+			for (City ty : cities) {
+				taskProbability[tx.id * numCities + ty.id] = td.probability(tx, ty);
+				if (taskProbability[tx.id * numCities + ty.id] != 0) successorCount[tx.id]++;
+			}
+		}
+
+		//first pass: number of (state, action) pairs
+		stateStart = new int[numStates + 1];
+		for (City x : cities) {
+			for (City y : cities) {
+				int s = x.id * numCities + y.id;
+				int pairs = x.neighbors().size();
+				if (x.id != y.id || localDistance != null && taskProbability[s] != 0) pairs++;
+				stateStart[s + 1] = stateStart[s] + pairs;
+			}
+		}
+
+		//second pass: actions, targets and rewards
+		int numPairs = stateStart[numStates];
+		actionOf = new int[numPairs];
+		targetOf = new int[numPairs];
+		reward = new double[numPairs];
+		distanceOf = new double[numPairs];
+		int sa = 0;
+		for (City x : cities) {
+			for (City y : cities) {
+				int s = x.id * numCities + y.id;
+				//Action numCities (value of) means pick up and deliver, only if a task was found
+				if (x.id != y.id || localDistance != null && taskProbability[s] != 0) {
+					actionOf[sa] = numCities;
+					targetOf[sa] = y.id;
+					distanceOf[sa] = (x.id != y.id) ? x.distanceTo(y) : localDistance[x.id];
+					reward[sa] = td.reward(x, y) - distanceOf[sa] * cost;
+					sa++;
+				}
+				//Action tx.id means not to pick up the task and just move to the neighbor city tx
+				for (City tx : x) {
+					actionOf[sa] = tx.id;
+					targetOf[sa] = tx.id;
+					distanceOf[sa] = x.distanceTo(tx);
+					reward[sa] = -(distanceOf[sa] * cost);
+					sa++;
+				}
+			}
+		}
+
+		if (!withSuccessors) {
+			successorStart = null;
+			toState = null;
+			probability = null;
+			return;
+		}
+
+		//third pass: the non-zero successors (tx, ty) of every pair ending in tx
+		successorStart = new int[numPairs + 1];
+		for (sa = 0; sa < numPairs; sa++) {
+			successorStart[sa + 1] = successorStart[sa] + successorCount[targetOf[sa]];
+		}
+		toState = new int[successorStart[numPairs]];
+		probability = new double[successorStart[numPairs]];
+		for (sa = 0; sa < numPairs; sa++) {
+			int e = successorStart[sa];
+			int tx = targetOf[sa];
+			for (int ty = 0; ty < numCities; ty++) {
+				double p = taskProbability[tx * numCities + ty];
+				if (p == 0) continue;
+				toState[e] = tx * numCities + ty;
+				probability[e] = p;
+				e++;
+			}
+		}
+	}
+
+	//Same model for another cost per km, sharing everything but the rewards
+	private TransitionModel(TransitionModel base, double cost) {
+		numCities = base.numCities;
+		numStates = base.numStates;
+		numActions = base.numActions;
+		this.cost = cost;
+		taskProbability = base.taskProbability;
+		successorCount = base.successorCount;
+		stateStart = base.stateStart;
+		actionOf = base.actionOf;
+		targetOf = base.targetOf;
+		distanceOf = base.distanceOf;
+		successorStart = base.successorStart;
+		toState = base.toState;
+		probability = base.probability;
+		reward = new double[base.reward.length];
+		for (int sa = 0; sa < reward.length; sa++) {
+			reward[sa] = base.reward[sa] + distanceOf[sa] * (base.cost - cost);
+		}
+	}
+
+	public TransitionModel withCost(double cost) {
+		return (cost == this.cost) ? this : new TransitionModel(this, cost);
+	}
+
+	public int numPairs() {
+		return stateStart[numStates];
+	}
+
+	//memory of the arrays, without the object headers
+	public long bytes() {
+		long bytes = 8L * (taskProbability.length + reward.length + distanceOf.length)
+				+ 4L * (successorCount.length + stateStart.length + actionOf.length + targetOf.length);
+		if (successorStart != null) bytes += 4L * (successorStart.length + toState.length) + 8L * probability.length;
+		return bytes;
+	}
+
+	public long nonZeroTransitions() {
+		long nnz = 0;
+		for (int sa = 0; sa < numPairs(); sa++) {
+			nnz += successorCount[targetOf[sa]];
+		}
+		return nnz;
+	}
+}
@@ -0,0 +1,274 @@
+package template;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//Value iteration over the sparse transition model.
+//With one thread sweeps are Gauss-Seidel: a backup already sees the values updated earlier in the same sweep.
+//With more threads sweeps are Jacobi: the states are split across a ForkJoinPool, backups read V and
+//write the next values into a second buffer, and the buffers are swapped at the end of the sweep.
+//The SPAN stopping rule ends the sweeps earlier, see iterate.
+class ValueIteration {
+
+	enum StoppingRule { MAX_NORM, SPAN }
+
+	//minimum number of states backed up by one fork-join task
+	private static final int GRAIN = 256;
+
+	final TransitionModel model;
+	final double discount;
+	final double eps;
+
+	double[] V;
+	int[] policy;
+	int iterations;
+	//number of Bellman backups of a single state
+	long backups;
+	//max-norm change of the last sweep
+	double residual;
+	long elapsedMillis;
+	boolean warmStarted;
+
+	StoppingRule stoppingRule = StoppingRule.MAX_NORM;
+	//SPAN rule: largest accepted V* - V^policy, and number of sweeps the policy must be unchanged before checking it
+	double tolerance;
+	int stableSweeps;
+	//guaranteed bound on V* - V^policy, NaN unless the SPAN rule stopped the sweeps
+	double suboptimality = Double.NaN;
+
+	Telemetry telemetry = Telemetry.DISABLED;
+	//name of the solve in the telemetry
+	String label = getClass().getSimpleName();
+
+	int threads = 1;
+	ForkJoinPool pool;
+	//values of the next sweep, only used by Jacobi sweeps
+	private double[] next;
+
+	public ValueIteration(TransitionModel model, double discount, double eps) {
+		this.model = model;
+		this.discount = discount;
+		this.eps = eps;
+	}
+
+	public void solve() {
+		solve(null);
+	}
+
+	//Solves starting from initialValues, e.g. the values of a solve for a close cost per km or discount.
+	//Value iteration converges from any start, the closer the start the fewer sweeps it needs.
+	public void solve(double[] initialValues) {
+		long start = System.currentTimeMillis();
+		policy = new int[model.numStates];
+
+		//initialize V table
+		warmStarted = (initialValues != null);
+		if (warmStarted) {
+			if (initialValues.length != model.numStates)
+				throw new IllegalArgumentException("Expected " + model.numStates + " initial values, got " + initialValues.length);
+			V = initialValues.clone();
+		} else {
+			V = new double[model.numStates];
+			Arrays.fill(V, 1);
+		}
+
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+			next = new double[model.numStates];
+		}
+		try {
+			iterations = 0;
+			backups = 0;
+			suboptimality = Double.NaN;
+			iterate();
+			elapsedMillis = System.currentTimeMillis() - start;
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+				pool = null;
+			}
+			next = null;
+		}
+	}
+
+	public String stats() {
+		return String.format("%s %s: %d iterations, %d backups, residual %.3g, %s%d ms",
+				getClass().getSimpleName(), warmStarted ? "(warm start)" : "(cold start)",
+				iterations, backups, residual,
+				Double.isNaN(suboptimality) ? "" : String.format("suboptimality <= %.3g, ", suboptimality), elapsedMillis);
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public void setTelemetry(Telemetry telemetry, String label) {
+		this.telemetry = telemetry;
+		this.label = label;
+	}
+
+	public void setStoppingRule(StoppingRule stoppingRule, double tolerance, int stableSweeps) {
+		this.stoppingRule = stoppingRule;
+		this.tolerance = tolerance;
+		this.stableSweeps = stableSweeps;
+	}
+
+	//Sweeps until the max-norm change of V drops below eps.
+	//With the SPAN rule, once the greedy policy has been unchanged for stableSweeps sweeps, a Jacobi sweep
+	//bounds how far the policy is from optimal, and the sweeps stop if the bound is within tolerance.
+	void iterate() {
+		double diff = 100;
+		int[] previous = (stoppingRule == StoppingRule.SPAN) ? new int[model.numStates] : null;
+		int stable = 0;
+		while (diff > eps) {
+			long start = System.nanoTime();
+			long before = backups;
+			diff = nextSweep();
+			iterations++;
+			telemetry.sweep(label, iterations, diff, System.nanoTime() - start, backups - before);
+
+			if (previous == null) continue;
+			stable = Arrays.equals(policy, previous) ? stable + 1 : 0;
+			System.arraycopy(policy, 0, previous, 0, policy.length);
+			if (stable >= stableSweeps) {
+				start = System.nanoTime();
+				before = backups;
+				double bound = boundedSweep();
+				iterations++;
+				//the record of a bounded sweep carries its bound as residual
+				telemetry.sweep(label, iterations, bound, System.nanoTime() - start, backups - before);
+				if (bound <= tolerance) {
+					suboptimality = bound;
+					break;
+				}
+				stable = 0;
+			}
+		}
+		residual = diff;
+	}
+
+	//Jacobi sweep V' = max_a R(s, a) + discount * P(s, a) V, which leaves the policy greedy for the V it started
+	//from, and returns the MacQueen-Porteus bound on V* - V^policy from the min and max of V' - V.
+	//With next states summing to 1, V' + c * min(V' - V) <= V^policy <= V* <= V' + c * max(V' - V) with
+	//c = discount / (1 - discount), so the policy is within c * span(V' - V) of optimal.
+	//Here the no-task states leak probability, a city's next states summing to rho = 1 - p(no task), and c is
+	//taken for the smallest or largest rho depending on the sign of the bound.
+	double boundedSweep() {
+		if (next == null) next = new double[model.numStates];
+		beginSweep();
+		double[] range = (pool != null) ? pool.invoke(new SweepTask(0, model.numStates)) : backupInto(0, model.numStates);
+		double[] tmp = V;
+		V = next;
+		next = tmp;
+		backups += model.numStates;
+
+		double rhoMin = 1;
+		double rhoMax = 0;
+		for (int c = 0; c < model.numCities; c++) {
+			double rho = 0;
+			for (int s = c * model.numCities; s < (c + 1) * model.numCities; s++) {
+				rho += model.taskProbability[s];
+			}
+			rhoMin = Math.min(rhoMin, rho);
+			rhoMax = Math.max(rhoMax, rho);
+		}
+		double upper = range[1] * horizon(range[1] >= 0 ? rhoMax : rhoMin);
+		double lower = range[0] * horizon(range[0] >= 0 ? rhoMin : rhoMax);
+		return upper - lower;
+	}
+
+	//sum of (discount * rho)^k for k >= 1
+	private double horizon(double rho) {
+		return discount * rho / (1 - discount * rho);
+	}
+
+	double nextSweep() {
+		return (pool != null) ? parallelSweep() : sweep();
+	}
+
+	//One sweep over all the states, returns the max-norm change of V
+	double sweep() {
+		beginSweep();
+		double diff = 0;
+		for (int s = 0; s < model.numStates; s++) {
+			double max = backup(s);
+			if (Math.abs(max - V[s]) > diff) diff = Math.abs(max - V[s]);
+			update(s, max);
+		}
+		backups += model.numStates;
+		return diff;
+	}
+
+	//Jacobi sweep over all the states, returns the max-norm change of V
+	double parallelSweep() {
+		beginSweep();
+		double[] range = pool.invoke(new SweepTask(0, model.numStates));
+		double[] tmp = V;
+		V = next;
+		next = tmp;
+		backups += model.numStates;
+		return Math.max(-range[0], range[1]);
+	}
+
+	//Backs up the states [from, to) into next and returns the min and max of next - V
+	private double[] backupInto(int from, int to) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int s = from; s < to; s++) {
+			next[s] = backup(s);
+			min = Math.min(min, next[s] - V[s]);
+			max = Math.max(max, next[s] - V[s]);
+		}
+		return new double[] { min, max };
+	}
+
+	void beginSweep() {
+	}
+
+	void update(int s, double value) {
+		V[s] = value;
+	}
+
+	//Bellman backup over the outgoing transitions of s only, stores the greedy action in policy[s]
+	double backup(int s) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int sa = model.stateStart[s]; sa < model.stateStart[s + 1]; sa++) {
+			double q = 0;
+			for (int e = model.successorStart[sa]; e < model.successorStart[sa + 1]; e++) {
+				q += model.probability[e] * V[model.toState[e]];
+			}
+			q = model.reward[sa] + discount * q;
+			if (q > max) {
+				max = q;
+				policy[s] = model.actionOf[sa];
+			}
+		}
+		return max;
+	}
+
+	//Backs up the states [from, to) into next and returns the min and max of their change
+	private class SweepTask extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		SweepTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from <= Math.max(GRAIN, model.numStates / (threads * 8))) {
+				return backupInto(from, to);
+			}
+			int mid = (from + to) >>> 1;
+			SweepTask left = new SweepTask(from, mid);
+			left.fork();
+			double[] right = new SweepTask(mid, to).compute();
+			double[] range = left.join();
+			return new double[] { Math.min(range[0], right[0]), Math.max(range[1], right[1]) };
+		}
+	}
+}